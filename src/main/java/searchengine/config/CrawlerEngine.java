@@ -0,0 +1,13 @@
+package searchengine.config;
+
+public enum CrawlerEngine {
+    /**
+     * Обход в ширину по очереди обхода: каждая страница скачивается отдельной
+     * задачей SiteMap в ForkJoinPool, задачи не порождают подзадач
+     */
+    FORK_JOIN,
+    /**
+     * Асинхронные запросы HttpClient с ограничением числа одновременных запросов
+     */
+    ASYNC
+}
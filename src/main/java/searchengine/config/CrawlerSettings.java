@@ -0,0 +1,133 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerSettings {
+
+    /**
+     * Максимальное количество скачанных, но ещё не обработанных страниц.
+     * При заполнении очереди обход сайта приостанавливается
+     */
+    private int queueCapacity = 200;
+
+    /**
+     * Количество потоков лемматизации на один сайт
+     */
+    private int lemmatizerThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Количество страниц, сохраняемых в базу данных за одну операцию
+     */
+    private int batchSize = 100;
+
+    /**
+     * Хранить в множестве посещённых адресов 64-битные отпечатки вместо строк.
+     * Снижает расход памяти на очень больших сайтах
+     */
+    private boolean compactVisitedUrls = false;
+
+    /**
+     * Движок обхода сайтов
+     */
+    private CrawlerEngine engine = CrawlerEngine.FORK_JOIN;
+
+    /**
+     * Максимальное количество одновременно обрабатываемых страниц одного сайта
+     */
+    private int maxInFlight = 64;
+
+    /**
+     * Максимальная частота запросов к одному хосту
+     */
+    private double requestsPerSecond = 2.0;
+
+    /**
+     * Верхняя граница числа одновременных запросов к одному хосту.
+     * Фактический предел подбирается по задержке и ответам сервера
+     */
+    private int maxConcurrencyPerHost = 4;
+
+    /**
+     * Время ответа, пока оно не превышено, число одновременных запросов к хосту растёт, мс
+     */
+    private long targetLatencyMs = 1000;
+
+    /**
+     * Количество повторов запроса после ответов 429 и 503
+     */
+    private int maxRetries = 3;
+
+    /**
+     * Инкрементальная переиндексация: уже сохранённые сайты не удаляются,
+     * страницы запрашиваются условно (If-None-Match, If-Modified-Since),
+     * и заново лемматизируются только изменившиеся страницы
+     */
+    private boolean incremental = false;
+
+    /**
+     * Каталог журналов обхода, по которым прерванный обход можно продолжить
+     */
+    private String journalDir = "crawl-journal";
+
+    /**
+     * Пропускать страницы, текст которых почти совпадает с уже обработанной страницей
+     */
+    private boolean nearDuplicateDetection = true;
+
+    /**
+     * Максимальное расстояние Хэмминга между SimHash-отпечатками почти дубликатов
+     */
+    private int nearDuplicateDistance = 3;
+
+    /**
+     * Интервал записи времени статуса индексируемых сайтов в базу данных, мс
+     */
+    private long heartbeatIntervalMs = 1000;
+
+    /**
+     * Максимальный размер скачиваемой страницы в байтах, более длинные страницы обрезаются
+     */
+    private long maxBodyBytes = 5 * 1024 * 1024;
+
+    /**
+     * Использовать HTTP/2, если сервер его поддерживает
+     */
+    private boolean http2 = true;
+
+    /**
+     * Таймаут установки соединения, мс
+     */
+    private long connectTimeoutMs = 10_000;
+
+    /**
+     * Таймаут ожидания ответа на запрос, мс
+     */
+    private long requestTimeoutMs = 30_000;
+
+    /**
+     * Соблюдать правила Disallow и Crawl-delay из robots.txt
+     */
+    private boolean respectRobotsTxt = true;
+
+    /**
+     * Добавлять в очередь обхода адреса из sitemap.xml
+     */
+    private boolean useSitemaps = true;
+
+    /**
+     * Максимальное количество страниц одного сайта, 0 — без ограничения
+     */
+    private int maxPagesPerSite = 0;
+
+    /**
+     * Максимальная глубина обхода от главной страницы, 0 — без ограничения
+     */
+    private int maxDepth = 0;
+}
@@ -0,0 +1,13 @@
+package searchengine.config;
+
+public enum IndexWriteMode {
+    /**
+     * Сохранение через репозитории JPA, по одному INSERT на запись
+     */
+    JPA,
+    /**
+     * Пакетная вставка через JdbcTemplate, которую драйвер MySQL
+     * объединяет в многострочные INSERT (rewriteBatchedStatements)
+     */
+    JDBC
+}
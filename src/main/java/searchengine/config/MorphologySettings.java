@@ -0,0 +1,25 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "morphology-settings")
+public class MorphologySettings {
+
+    /**
+     * Максимальное количество слов в кеше лемм
+     */
+    private int lemmaCacheSize = 100_000;
+
+    /**
+     * Список частых слов, которые лемматизируются после загрузки словарей,
+     * чтобы прогреть кеш лемм и JIT-компиляцию до первых запросов.
+     * Пустое значение отключает прогрев
+     */
+    private String warmUpWords = "";
+}
@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "storage-settings")
+public class StorageSettings {
+
+    /**
+     * Способ записи лемм и индексных записей
+     */
+    private IndexWriteMode indexWriteMode = IndexWriteMode.JDBC;
+
+    /**
+     * Количество строк в одном пакете записи
+     */
+    private int jdbcBatchSize = 1000;
+
+    /**
+     * Количество строк, удаляемых одним запросом при удалении сайта.
+     * Удаление порциями сохраняет транзакции небольшими
+     */
+    private int deleteChunkSize = 10_000;
+
+    /**
+     * Количество страниц, читаемых одним запросом при загрузке сохранённых страниц сайта
+     */
+    private int readChunkSize = 5_000;
+}
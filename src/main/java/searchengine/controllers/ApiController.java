@@ -43,11 +43,12 @@ public class ApiController {
      * переиндексацию, если они уже проиндексированы.
      * Если в настоящий момент индексация или переиндексация уже
      * запущена, метод возвращает соответствующее сообщение об ошибке.
+     * @param resume продолжить прерванный обход сайтов по журналу обхода
      * @return boolean
      */
     @GetMapping("/startIndexing")
-    public ResponseEntity<IndexingResponse> startIndexing() throws IOException {
-        return ResponseEntity.ok(indexingService.startIndexing());
+    public ResponseEntity<IndexingResponse> startIndexing(@RequestParam(required = false, defaultValue = "false") boolean resume) throws IOException {
+        return ResponseEntity.ok(indexingService.startIndexing(resume));
     }
 
     /**
@@ -5,6 +5,17 @@ import lombok.Data;
 @Data
 public class Page {
     private String path;
+    /**
+     * Адрес, по которому получен ответ после перенаправлений
+     */
+    private String finalUrl;
     private String content;
+    private String title;
+    private String text;
     private int statusCode;
+    private String etag;
+    private String lastModified;
+    private boolean html = true;
+    private long skippedBytes;
+    private long retryAfterMillis;
 }
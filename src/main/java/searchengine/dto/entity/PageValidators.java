@@ -0,0 +1,17 @@
+package searchengine.dto.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Сведения о сохранённой странице, необходимые для условного запроса
+ */
+@Getter
+@AllArgsConstructor
+public class PageValidators {
+    private int id;
+    private String path;
+    private String etag;
+    private String lastModified;
+    private String contentHash;
+}
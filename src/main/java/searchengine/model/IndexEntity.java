@@ -40,4 +40,11 @@ public class IndexEntity {
     @Column(name = "rank_count", columnDefinition = "FLOAT", nullable = false)
     private float rank;
 
+    /**
+     * Порядковые номера слов страницы с данной леммой,
+     * закодированные {@link searchengine.services.indexing.PositionCodec}
+     */
+    @Column(name = "positions", columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
+
 }
\ No newline at end of file
@@ -15,7 +15,8 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
-@Table(name = "lemma")
+@Table(name = "lemma", uniqueConstraints =
+        @UniqueConstraint(name = "uk_lemma_site_lemma", columnNames = {"site_id", "lemma"}))
 public class LemmaEntity {
 
     @Id
@@ -30,9 +31,10 @@ public class LemmaEntity {
     private SiteEntity siteId;
 
     /**
-     * Нормальная форма слова (лемма)
+     * Нормальная форма слова (лемма). Двоичное сравнение нужно уникальному ключу:
+     * при сравнении без учёта диакритики «все» и «всё» считались бы одной леммой
      */
-    @Column(name = "lemma", columnDefinition = "VARCHAR(255)", nullable = false)
+    @Column(name = "lemma", columnDefinition = "VARCHAR(255) COLLATE utf8mb4_bin", nullable = false)
     private String lemma;
 
     /**
@@ -28,9 +28,9 @@ public class PageEntity {
     private SiteEntity siteId;
 
     /**
-     * Адрес страницы от корня сайта
+     * Адрес страницы от корня сайта: путь в percent-encoded форме и канонический запрос
      */
-    @Column(name = "path", columnDefinition = "VARCHAR(255)", nullable = false)
+    @Column(name = "path", columnDefinition = "VARCHAR(768)", nullable = false)
     private String path;
 
     /**
@@ -46,6 +46,37 @@ public class PageEntity {
     @Column(name = "content", columnDefinition = "MEDIUMTEXT", nullable = false)
     private String content;
 
+    /**
+     * Заголовок страницы
+     */
+    @Column(name = "title", columnDefinition = "VARCHAR(512)")
+    private String title;
+
+    /**
+     * Видимый текст страницы без разметки, скриптов и стилей.
+     * Извлекается один раз при обходе и используется для индексации и поиска
+     */
+    @Column(name = "text", columnDefinition = "MEDIUMTEXT")
+    private String text;
+
+    /**
+     * Значение заголовка ETag из ответа сервера
+     */
+    @Column(name = "etag", columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    /**
+     * Значение заголовка Last-Modified из ответа сервера
+     */
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    /**
+     * SHA-256 контента страницы
+     */
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
     @OneToMany(mappedBy = "pageId", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     private List<IndexEntity> indexPages = new ArrayList<>();
 }
@@ -33,6 +33,15 @@ public class SiteEntity {
     @Column(columnDefinition = "ENUM('INDEXING', 'INDEXED', 'FAILED')", nullable = false)
     private StatusType status;
 
+    /**
+     * Статус последнего обхода сайта. Обычно совпадает со status, но при
+     * инкрементальном обходе и продолжении обхода по журналу действующее
+     * поколение остаётся готовым к поиску (INDEXED), а ход обхода отражается здесь
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "crawl_status", columnDefinition = "ENUM('INDEXING', 'INDEXED', 'FAILED')")
+    private StatusType crawlStatus;
+
     /**
      * Дата и время статуса (в случае статуса INDEXING дата и время должны
      * обновляться регулярно при добавлении каждой новой страницы в индекс)
@@ -59,6 +68,13 @@ public class SiteEntity {
     @Column(name = "name", columnDefinition = "VARCHAR(255)", nullable = false)
     private String name;
 
+    /**
+     * Действующее поколение индекса сайта, по которому выполняется поиск.
+     * Во время полной переиндексации у сайта есть второе, строящееся поколение
+     */
+    @Column(name = "live", nullable = false)
+    private boolean live;
+
     @OneToMany(mappedBy = "siteId", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     private List<PageEntity> pages = new ArrayList<>();
 
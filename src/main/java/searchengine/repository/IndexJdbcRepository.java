@@ -0,0 +1,111 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import searchengine.model.IndexEntity;
+import searchengine.model.LemmaEntity;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная запись лемм и индексных записей в обход Hibernate.
+ * <p>
+ * Идентификаторы этих таблиц генерируются базой данных (IDENTITY), из-за чего
+ * Hibernate выполняет по одному INSERT на запись. Здесь строки отправляются
+ * пакетами JDBC, которые драйвер MySQL при rewriteBatchedStatements=true
+ * превращает в многострочные INSERT
+ */
+@Repository
+@RequiredArgsConstructor
+public class IndexJdbcRepository {
+    private static final String INSERT_LEMMA = "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, ?)";
+    private static final String UPSERT_LEMMA = "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, 1) "
+            + "ON DUPLICATE KEY UPDATE frequency = frequency + 1";
+    private static final String UPDATE_FREQUENCY = "UPDATE lemma SET frequency = ? WHERE id = ?";
+    private static final String INSERT_INDEX =
+            "INSERT INTO index_entity (page_id, lemma_id, rank_count, positions) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Вставляет новые леммы и записывает в них сгенерированные идентификаторы
+     *
+     * @param lemmas новые леммы
+     */
+    public void insertLemmas(List<LemmaEntity> lemmas) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_LEMMA, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        LemmaEntity lemma = lemmas.get(i);
+                        ps.setInt(1, lemma.getSiteId().getId());
+                        ps.setString(2, lemma.getLemma());
+                        ps.setInt(3, lemma.getFrequency());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return lemmas.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < lemmas.size() && i < keys.size(); i++) {
+            Object key = keys.get(i).values().iterator().next();
+            lemmas.get(i).setId(((Number) key).intValue());
+        }
+    }
+
+    /**
+     * Увеличивает на единицу частоту лемм сайта, создавая отсутствующие леммы.
+     * Опирается на уникальный ключ (site_id, lemma)
+     *
+     * @param siteId идентификатор сайта
+     * @param lemmas леммы страницы
+     */
+    public void upsertLemmas(int siteId, List<String> lemmas) {
+        jdbcTemplate.batchUpdate(UPSERT_LEMMA, lemmas, lemmas.size(), (ps, lemma) -> {
+            ps.setInt(1, siteId);
+            ps.setString(2, lemma);
+        });
+    }
+
+    /**
+     * Обновляет частоту сохранённых лемм
+     *
+     * @param lemmas леммы с идентификаторами
+     */
+    public void updateFrequencies(List<LemmaEntity> lemmas) {
+        jdbcTemplate.batchUpdate(UPDATE_FREQUENCY, lemmas, lemmas.size(), (ps, lemma) -> {
+            ps.setInt(1, lemma.getFrequency());
+            ps.setInt(2, lemma.getId());
+        });
+    }
+
+    /**
+     * Вставляет индексные записи. Страницы и леммы должны быть уже сохранены
+     *
+     * @param indexes индексные записи
+     */
+    public void insertIndexes(List<IndexEntity> indexes) {
+        jdbcTemplate.batchUpdate(INSERT_INDEX, indexes, indexes.size(), (ps, index) -> {
+            ps.setInt(1, index.getPageId().getId());
+            ps.setInt(2, index.getLemmaId().getId());
+            ps.setFloat(3, index.getRank());
+            if (index.getPositions() == null) {
+                ps.setNull(4, Types.BLOB);
+            } else {
+                ps.setBytes(4, index.getPositions());
+            }
+        });
+    }
+}
@@ -1,17 +1,27 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.IndexEntity;
-import searchengine.model.PageEntity;
 
 import java.util.List;
 
 @Repository
 @Transactional
 public interface IndexRepository extends JpaRepository<IndexEntity, Integer> {
-    List<IndexEntity> findAllByPageId(PageEntity pageId);
+    @Modifying
+    @Query("DELETE FROM IndexEntity i WHERE i.pageId.id = :pageId")
+    int deleteByPageId(@Param("pageId") int pageId);
 
-    void deleteByPageId(PageEntity pageId);
+    @Modifying
+    @Query(value = "DELETE FROM index_entity WHERE page_id IN (SELECT id FROM page WHERE site_id = :siteId) LIMIT :limit",
+            nativeQuery = true)
+    int deleteChunkBySiteId(@Param("siteId") int siteId, @Param("limit") int limit);
+
+    @Query("SELECT i.lemmaId.lemma FROM IndexEntity i WHERE i.pageId.id = :pageId")
+    List<String> findLemmasByPageId(@Param("pageId") int pageId);
 }
\ No newline at end of file
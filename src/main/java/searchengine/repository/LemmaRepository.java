@@ -10,6 +10,7 @@ import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.LemmaEntity;
 import searchengine.model.SiteEntity;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -18,15 +19,25 @@ import java.util.Set;
 public interface LemmaRepository extends JpaRepository<LemmaEntity, Integer> {
     int countBySiteId(SiteEntity siteEntity);
 
-    List<LemmaEntity> findByLemmaInAndFrequencyGreaterThanOrderByFrequencyAsc(Set<String> lemmas, int threshold, Pageable pageable);
+    List<LemmaEntity> findByLemmaInAndFrequencyGreaterThanAndSiteIdLiveTrueOrderByFrequencyAsc(Set<String> lemmas,
+                                                                                            int threshold,
+                                                                                            Pageable pageable);
 
     List<LemmaEntity> findBySiteId(SiteEntity siteId);
 
+    List<LemmaEntity> findBySiteIdAndLemmaIn(SiteEntity siteId, Collection<String> lemmas);
+
+    @Modifying
+    @Query(value = "UPDATE lemma l JOIN index_entity i ON i.lemma_id = l.id "
+            + "SET l.frequency = l.frequency - 1 WHERE i.page_id = :pageId AND l.frequency > 0",
+            nativeQuery = true)
+    int decrementFrequencyForPage(@Param("pageId") int pageId);
+
     @Modifying
-    @Query("UPDATE LemmaEntity l SET l.frequency = l.frequency - 1 WHERE l IN :lemmas AND l.frequency > 0")
-    void decrementFrequencyForLemmas(@Param("lemmas") List<LemmaEntity> lemmas);
+    @Query("DELETE FROM LemmaEntity l WHERE l.siteId.id = :siteId AND l.frequency <= 0")
+    int deleteWhereFrequencyZero(@Param("siteId") int siteId);
 
     @Modifying
-    @Query("DELETE FROM LemmaEntity l WHERE l.frequency <= 0")
-    void deleteWhereFrequencyZero();
+    @Query(value = "DELETE FROM lemma WHERE site_id = :siteId LIMIT :limit", nativeQuery = true)
+    int deleteChunkBySiteId(@Param("siteId") int siteId, @Param("limit") int limit);
 }
\ No newline at end of file
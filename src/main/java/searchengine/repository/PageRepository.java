@@ -1,8 +1,13 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.entity.PageValidators;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 
@@ -11,9 +16,37 @@ import java.util.List;
 @Repository
 @Transactional
 public interface PageRepository extends JpaRepository<PageEntity, Integer> {
-    PageEntity findByPath(String path);
-
-    List<PageEntity> findAllBySiteId(SiteEntity siteEntity);
+    PageEntity findBySiteIdAndPath(SiteEntity siteId, String path);
 
     int countBySiteId(SiteEntity siteEntity);
+
+    /**
+     * Порция сведений о страницах сайта с идентификатором больше заданного.
+     * Постраничное чтение по ключу не загружает HTML-код и не требует OFFSET
+     *
+     * @param siteId   сайт
+     * @param afterId  идентификатор последней прочитанной страницы или 0
+     * @param pageable размер порции
+     * @return List
+     */
+    @Query("SELECT new searchengine.dto.entity.PageValidators(p.id, p.path, p.etag, p.lastModified, p.contentHash) " +
+            "FROM PageEntity p WHERE p.siteId = :siteId AND p.id > :afterId ORDER BY p.id")
+    List<PageValidators> findValidatorsChunk(@Param("siteId") SiteEntity siteId,
+                                             @Param("afterId") int afterId,
+                                             Pageable pageable);
+
+    @Query("SELECT p.content FROM PageEntity p WHERE p.id = :id")
+    String findContentById(@Param("id") int id);
+
+    @Modifying
+    @Query("DELETE FROM PageEntity p WHERE p.id = :id")
+    int deletePageById(@Param("id") int id);
+
+    @Modifying
+    @Query(value = "DELETE FROM page WHERE site_id = :siteId LIMIT :limit", nativeQuery = true)
+    int deleteChunkBySiteId(@Param("siteId") int siteId, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE PageEntity p SET p.etag = :etag, p.lastModified = :lastModified WHERE p.id = :id")
+    void updateValidators(@Param("id") int id, @Param("etag") String etag, @Param("lastModified") String lastModified);
 }
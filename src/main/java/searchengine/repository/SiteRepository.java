@@ -1,14 +1,45 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.SiteEntity;
+import searchengine.model.StatusType;
+
+import java.util.Date;
+import java.util.List;
 
 @Repository
 @Transactional
 public interface SiteRepository extends JpaRepository<SiteEntity, Long> {
-    SiteEntity findByUrl(String url);
+    SiteEntity findByUrlAndLiveTrue(String url);
+
+    SiteEntity findFirstByUrlOrderByIdDesc(String url);
+
+    List<SiteEntity> findByUrlAndLiveFalse(String url);
+
+    List<SiteEntity> findByStatusOrCrawlStatus(StatusType status, StatusType crawlStatus);
+
+    /**
+     * Делает поколение действующим, а остальные поколения сайта — недействующими.
+     * Выполняется одним запросом, поэтому поиск видит либо старое, либо новое поколение
+     *
+     * @param url адрес сайта
+     * @param id  идентификатор нового поколения
+     * @return количество изменённых записей
+     */
+    @Modifying
+    @Query("UPDATE SiteEntity s SET s.live = CASE WHEN s.id = :id THEN true ELSE false END WHERE s.url = :url")
+    int activateGeneration(@Param("url") String url, @Param("id") int id);
+
+    @Modifying
+    @Query("DELETE FROM SiteEntity s WHERE s.id = :id")
+    int deleteSiteById(@Param("id") int id);
 
-    void deleteByUrl(String url);
+    @Modifying
+    @Query("UPDATE SiteEntity s SET s.statusTime = :statusTime WHERE s.id = :id")
+    void updateStatusTime(@Param("id") int id, @Param("statusTime") Date statusTime);
 }
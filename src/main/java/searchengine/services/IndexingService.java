@@ -6,7 +6,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 
 public interface IndexingService {
-    IndexingResponse startIndexing() throws IOException;
+    IndexingResponse startIndexing(boolean resume) throws IOException;
 
     IndexingResponse stopIndexing();
 
@@ -1,26 +1,62 @@
 package searchengine.services;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlerEngine;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.config.StorageSettings;
 import searchengine.dto.entity.Page;
+import searchengine.dto.entity.PageValidators;
 import searchengine.dto.indexing.IndexingResponse;
 import searchengine.model.*;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.indexing.FingerprintIndex;
+import searchengine.services.indexing.IndexGenerations;
+import searchengine.services.indexing.IndexWriter;
+import searchengine.services.indexing.LemmaAggregator;
+import searchengine.services.indexing.PagePipeline;
+import searchengine.services.indexing.PositionCodec;
+import searchengine.services.indexing.ProcessedPage;
+import searchengine.services.indexing.SimHash;
+import searchengine.services.morphology.LemmaMorphology;
 import searchengine.services.morphology.LemmaMorphologyImpl;
+import searchengine.services.parsing.AsyncSiteCrawler;
+import searchengine.services.parsing.CrawlContext;
+import searchengine.services.parsing.CrawlFrontier;
+import searchengine.services.parsing.CrawlJournal;
+import searchengine.services.parsing.CrawlStats;
+import searchengine.services.parsing.FrontierUrl;
+import searchengine.services.parsing.PageFetcher;
+import searchengine.services.parsing.PolitenessScheduler;
+import searchengine.services.parsing.RecrawlState;
+import searchengine.services.parsing.RobotsTxt;
+import searchengine.services.parsing.RobotsTxtCache;
+import searchengine.services.parsing.SiteHeartbeat;
 import searchengine.services.parsing.SiteMap;
+import searchengine.services.parsing.SitemapReader;
+import searchengine.services.parsing.UrlCanonicalizer;
+import searchengine.services.parsing.VisitedUrlSet;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -31,26 +67,61 @@ import java.util.stream.Collectors;
 public class IndexingServiceImpl implements IndexingService {
 
     private static final int BATCH_SIZE = 1000;
+    private static final int TITLE_LENGTH = 512;
+    private static final String STOPPED_ERROR = "Индексация остановлена пользователем, обход можно продолжить";
+    private static final String RESTARTED_ERROR = "Индексация прервана перезапуском приложения, обход можно продолжить";
     private static volatile boolean isIndexingStopped = false;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final IndexWriter indexWriter;
+    private final IndexGenerations indexGenerations;
     private final LemmaMorphologyImpl lemmaMorphology;
     private final SitesList sites;
+    private final CrawlerSettings crawlerSettings;
+    private final StorageSettings storageSettings;
+    private final PageFetcher pageFetcher;
+    private final PolitenessScheduler politenessScheduler;
+    private final SiteHeartbeat siteHeartbeat;
+    private final RobotsTxtCache robotsTxtCache;
+    private final SitemapReader sitemapReader;
+    private final TransactionTemplate transactionTemplate;
     private final Object lock = new Object();
     private final List<Thread> indexingThreads;
     private ForkJoinPool forkJoinPool;
 
+    /**
+     * Сайты и страницы сохраняются между запусками приложения, поэтому обход,
+     * прерванный остановкой приложения, остаётся в статусе INDEXING. Такие обходы
+     * отмечаются как неудачные, продолжить их можно запуском индексации с resume=true
+     */
+    @PostConstruct
+    public void markInterruptedCrawls() {
+        List<SiteEntity> interrupted = siteRepository.findByStatusOrCrawlStatus(StatusType.INDEXING, StatusType.INDEXING);
+        for (SiteEntity siteEntity : interrupted) {
+            setCrawlStatus(siteEntity, StatusType.FAILED);
+            siteEntity.setLastError(RESTARTED_ERROR);
+            siteRepository.save(siteEntity);
+        }
+        if (!interrupted.isEmpty()) {
+            log.info("Marked {} crawls interrupted by the previous shutdown as failed", interrupted.size());
+        }
+    }
+
     @Override
-    public IndexingResponse startIndexing() {
+    public IndexingResponse startIndexing(boolean resume) {
+        if (!lemmaMorphology.isReady()) {
+            return new IndexingResponse(false, lemmaMorphology.notReadyError());
+        }
         synchronized (lock) {
             if (forkJoinPool != null && !forkJoinPool.isTerminated()) {
                 return new IndexingResponse(false, "Индексация уже запущена");
             }
+            isIndexingStopped = false;
             initThreadPool();
         }
-        new Thread(this::indexSite).start();
+        new Thread(() -> indexSite(resume)).start();
         return new IndexingResponse(true);
     }
 
@@ -81,9 +152,13 @@ public class IndexingServiceImpl implements IndexingService {
 
     @Override
     public IndexingResponse indexPage(String page) throws MalformedURLException {
+        if (!lemmaMorphology.isReady()) {
+            return new IndexingResponse(false, lemmaMorphology.notReadyError());
+        }
         synchronized (lock) {
-            SiteEntity siteEntity = siteRepository.findByUrl(getHostName(page));
-            PageEntity pageEntity = pageRepository.findByPath(new URL(page).getPath());
+            SiteEntity siteEntity = siteRepository.findByUrlAndLiveTrue(getHostName(page));
+            String pagePath = UrlCanonicalizer.pathKey(UrlCanonicalizer.canonicalize(page));
+            PageEntity pageEntity = siteEntity == null ? null : pageRepository.findBySiteIdAndPath(siteEntity, pagePath);
 
             if (forkJoinPool != null && !forkJoinPool.isTerminated()) {
                 log.info("Indexing is running");
@@ -110,14 +185,13 @@ public class IndexingServiceImpl implements IndexingService {
         }
     }
 
-    private void indexSite() {
+    private void indexSite(boolean resume) {
         try {
-            saveSitesInDB();
+            List<SiteEntity> siteEntities = saveSitesInDB(resume);
             List<Thread> indexingThreads = new ArrayList<>();
-            List<SiteEntity> siteEntities = siteRepository.findAll();
 
             for (SiteEntity siteEntity : siteEntities) {
-                Thread indexingThread = new Thread(() -> indexPages(siteEntity));
+                Thread indexingThread = new Thread(() -> indexPages(siteEntity, resume));
                 indexingThreads.add(indexingThread);
                 indexingThread.start();
             }
@@ -133,46 +207,253 @@ public class IndexingServiceImpl implements IndexingService {
             log.error("Error during site indexing: {}", ex.getMessage(), ex);
         } finally {
             cleanupAfterParsing();
-            log.info("Indexing finished");
+            log.info("Indexing finished, HTTP client: {}, lemma cache: {}, index writes: {}",
+                    pageFetcher.getMetrics().summary(), lemmaMorphology.getLemmaCache().summary(),
+                    indexWriter.summary());
         }
     }
 
-    private void indexPages(SiteEntity siteEntity) {
+    /**
+     * Обход сайта с потоковой обработкой страниц: каждая скачанная страница
+     * сразу передаётся в конвейер лемматизации и сохранения.
+     * Ход обхода записывается в журнал, по которому прерванный обход можно продолжить
+     *
+     * @param siteEntity сайт
+     * @param resume     продолжить обход по журналу, если он есть
+     */
+    private void indexPages(SiteEntity siteEntity, boolean resume) {
+        CrawlJournal journal = journalFor(siteEntity.getUrl());
+        boolean resuming = resume && journal.exists();
+        if (resuming && pageRepository.countBySiteId(siteEntity) == 0) {
+            log.warn("Site {} has no stored pages, its crawl journal is discarded and the site is crawled in full",
+                    siteEntity.getUrl());
+            journal.delete();
+            resuming = false;
+        }
+        boolean incremental = resuming
+                || (crawlerSettings.isIncremental() && pageRepository.countBySiteId(siteEntity) > 0);
+        RecrawlState recrawlState = incremental
+                ? RecrawlState.load(siteEntity, pageRepository, storageSettings.getReadChunkSize())
+                : RecrawlState.empty();
+        Map<String, LemmaEntity> lemmaEntityMap = incremental
+                ? loadExistingLemmas(siteEntity)
+                : new HashMap<>();
+        FingerprintIndex fingerprints = new FingerprintIndex(crawlerSettings.getNearDuplicateDistance());
+        PagePipeline pipeline = new PagePipeline(getHostName(siteEntity.getUrl()),
+                crawlerSettings.getQueueCapacity(),
+                crawlerSettings.getLemmatizerThreads(),
+                crawlerSettings.getBatchSize(),
+                page -> lemmatizeAndJournal(page, siteEntity, recrawlState, fingerprints, journal),
+                batch -> {
+                    transactionTemplate.executeWithoutResult(status -> saveProcessedPages(batch, lemmaEntityMap));
+                    batch.forEach(processedPage -> journal.done(processedPage.getUrl()));
+                });
         try {
-            SiteMap siteMap = new SiteMap(siteEntity.getUrl(), siteRepository, siteEntity, false, isIndexingStopped);
-            forkJoinPool.invoke(siteMap);
-            Set<Page> pages = new CopyOnWriteArraySet<>(siteMap.getPages());
-            Set<PageEntity> pageEntities = pages.stream()
-                    .filter(page -> page.getPath().startsWith(siteEntity.getUrl()))
-                    .map(page -> createPage(page, siteEntity))
-                    .collect(Collectors.toSet());
-            if (!pageEntities.isEmpty()) {
-                processAndSavePages(pageEntities, siteEntity);
+            VisitedUrlSet visitedUrls = VisitedUrlSet.create(crawlerSettings.isCompactVisitedUrls());
+            String startUrl = UrlCanonicalizer.canonicalize(siteEntity.getUrl());
+            CrawlFrontier frontier = new CrawlFrontier(crawlerSettings.getMaxInFlight(),
+                    crawlerSettings.getMaxPagesPerSite(), crawlerSettings.getMaxDepth());
+            RobotsTxt robotsTxt = crawlerSettings.isRespectRobotsTxt()
+                    ? robotsTxtCache.forSite(startUrl)
+                    : RobotsTxt.allowAll();
+            politenessScheduler.applyCrawlDelay(startUrl, robotsTxt.getCrawlDelayMillis());
+            List<FrontierUrl> pending = resuming ? journal.replay(visitedUrls) : List.of();
+            journal.start(resuming);
+            pipeline.start();
+            CrawlContext context = new CrawlContext(siteEntity, pipeline, visitedUrls,
+                    politenessScheduler, pageFetcher, recrawlState, journal, siteHeartbeat, frontier, robotsTxt,
+                    () -> isIndexingStopped || pipeline.isFailed());
+            if (resuming) {
+                pending.forEach(frontier::add);
+            } else {
+                context.discover(new FrontierUrl(startUrl, 0));
+                seedFromSitemaps(context, startUrl, robotsTxt);
+            }
+            crawl(context);
+            pipeline.finish();
+            if (isIndexingStopped) {
+                log.info("Indexing of site {} stopped, crawl can be resumed", siteEntity.getUrl());
+                markFailed(siteEntity, STOPPED_ERROR);
+                return;
+            }
+            journal.delete();
+            if (incremental && !resuming) {
+                removeUnseenPages(siteEntity, recrawlState, lemmaEntityMap);
             }
+            if (frontier.isBudgetExhausted()) {
+                log.info("Page budget of {} reached for site {}", crawlerSettings.getMaxPagesPerSite(), siteEntity.getUrl());
+            }
+            log.info("Visited {} URLs of site {} with {} fetches ({} per URL, {} failed), visited set size ~{} KB",
+                    visitedUrls.size(), siteEntity.getUrl(), context.getStats().getFetches(),
+                    String.format("%.2f", context.getStats().fetchesPerUniqueUrl(visitedUrls.size())),
+                    context.getStats().getFailures(),
+                    visitedUrls.estimatedBytes() / 1024);
+            log.info("Skipped {} near-duplicate pages and {} non-HTML resources of site {}, saved ~{} KB of downloads",
+                    fingerprints.getDuplicates(), context.getStats().getSkippedResources(), siteEntity.getUrl(),
+                    context.getStats().getBytesSaved() / 1024);
+
+            siteHeartbeat.finish(siteEntity.getId());
+            setCrawlStatus(siteEntity, StatusType.INDEXED);
+            siteEntity.setLastError(pageFailures(context.getStats()));
+            siteRepository.save(siteEntity);
+            if (!siteEntity.isLive()) {
+                indexGenerations.activate(siteEntity);
+            }
+            log.info("Successfully indexed site: {}", siteEntity.getUrl());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            pipeline.cancel();
+            log.warn("Indexing of site {} interrupted", siteEntity.getUrl());
+            markFailed(siteEntity, STOPPED_ERROR);
         } catch (Exception ex) {
+            pipeline.cancel();
             log.error("Error during page indexing for site {}: {}", siteEntity.getUrl(), ex.getMessage(), ex);
+            markFailed(siteEntity, ex.getMessage());
+        } finally {
+            siteHeartbeat.finish(siteEntity.getId());
+            journal.close();
         }
+    }
 
+    /**
+     * Текст ошибки сайта по ошибкам обработки отдельных страниц
+     *
+     * @param stats счётчики обхода
+     * @return ошибка или null, если все страницы обработаны
+     */
+    private static String pageFailures(CrawlStats stats) {
+        if (stats.getFailures() == 0) {
+            return null;
+        }
+        return String.format("Не удалось обработать страниц: %d, последняя ошибка: %s",
+                stats.getFailures(), stats.getLastError());
+    }
+
+    /**
+     * Сохраняет статус FAILED и текст ошибки прерванного обхода сайта.
+     * Действующее проиндексированное поколение остаётся доступным для поиска
+     *
+     * @param siteEntity сайт
+     * @param error      текст ошибки
+     */
+    private void markFailed(SiteEntity siteEntity, String error) {
+        siteHeartbeat.finish(siteEntity.getId());
+        setCrawlStatus(siteEntity, StatusType.FAILED);
+        siteEntity.setLastError(error);
+        try {
+            siteRepository.save(siteEntity);
+        } catch (Exception ex) {
+            log.error("Failed to save status of site {}: {}", siteEntity.getUrl(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Устанавливает статус обхода сайта. Статус готовности к поиску меняется вместе с ним,
+     * только пока сайт не готов к поиску или когда обход завершился успешно, поэтому
+     * действующее проиндексированное поколение не перестаёт находиться поиском
+     * во время инкрементального обхода и продолжения обхода по журналу
+     *
+     * @param siteEntity сайт
+     * @param status     статус обхода
+     */
+    private static void setCrawlStatus(SiteEntity siteEntity, StatusType status) {
+        boolean searchable = siteEntity.isLive() && siteEntity.getStatus() == StatusType.INDEXED;
+        siteEntity.setCrawlStatus(status);
+        if (status == StatusType.INDEXED || !searchable) {
+            siteEntity.setStatus(status);
+        }
+        siteEntity.setStatusTime(Date.from(Instant.now()));
+    }
+
+    /**
+     * Обход сайта выбранным в настройках движком по очереди обхода
+     *
+     * @param context состояние обхода сайта
+     */
+    private void crawl(CrawlContext context) throws InterruptedException {
+        if (crawlerSettings.getEngine() == CrawlerEngine.ASYNC) {
+            new AsyncSiteCrawler(context, forkJoinPool).crawl();
+        } else {
+            context.getFrontier().dispatch(context::isIndexingStopped,
+                    next -> SiteMap.submit(next, context, forkJoinPool));
+        }
+    }
+
+    /**
+     * Добавляет в очередь обхода адреса из sitemap-файлов, указанных в robots.txt,
+     * или из /sitemap.xml, если robots.txt их не содержит
+     *
+     * @param context   состояние обхода сайта
+     * @param startUrl  адрес главной страницы
+     * @param robotsTxt правила robots.txt сайта
+     */
+    private void seedFromSitemaps(CrawlContext context, String startUrl, RobotsTxt robotsTxt) throws InterruptedException {
+        if (!crawlerSettings.isUseSitemaps()) {
+            return;
+        }
+        List<String> sitemaps = robotsTxt.getSitemaps().isEmpty()
+                ? List.of(startUrl.replaceAll("/+$", "") + "/sitemap.xml")
+                : robotsTxt.getSitemaps();
+        int seeded = 0;
+        for (FrontierUrl entry : sitemapReader.read(sitemaps, crawlerSettings.getMaxPagesPerSite())) {
+            String url = UrlCanonicalizer.canonicalize(entry.getUrl());
+            if (context.discover(new FrontierUrl(url, entry.getDepth(), entry.getLastModified()))) {
+                seeded++;
+            }
+        }
+        log.info("Seeded {} URLs of site {} from sitemaps", seeded, startUrl);
+    }
+
+    /**
+     * Стадия лемматизации с отметкой в журнале страниц, которые не нужно сохранять
+     */
+    private ProcessedPage lemmatizeAndJournal(Page page,
+                                              SiteEntity siteEntity,
+                                              RecrawlState recrawlState,
+                                              FingerprintIndex fingerprints,
+                                              CrawlJournal journal) {
+        ProcessedPage processedPage = lemmatizePage(page, siteEntity, recrawlState, fingerprints);
+        if (processedPage == null) {
+            journal.done(page.getPath());
+        }
+        return processedPage;
+    }
+
+    private CrawlJournal journalFor(String siteUrl) {
+        return CrawlJournal.forSite(Path.of(crawlerSettings.getJournalDir()), siteUrl);
     }
 
     private void indexSinglePage(SiteEntity siteEntity, String page) {
-        SiteMap siteMap = new SiteMap(page, siteRepository, siteEntity, true, isIndexingStopped);
-        forkJoinPool.invoke(siteMap);
-        siteMap.getPages().stream()
-                .filter(pages -> pages.getPath().equals(page))
-                .findFirst()
-                .map(pages -> createPage(pages, siteEntity))
-                .ifPresent(pageEntity -> processAndSavePages(Set.of(pageEntity), siteEntity));
-        log.info("Page saved in DB: {}", page);
-        cleanupAfterParsing();
+        try {
+            Page fetchedPage = pageFetcher.fetch(page);
+            if (!fetchedPage.isHtml()) {
+                log.warn("Page {} is not an HTML page and will not be indexed", page);
+                return;
+            }
+            siteRepository.save(siteEntity);
+            PageEntity pageEntity = pageRepository.save(createPage(fetchedPage, siteEntity));
+            saveLemmaAndIndexPage(pageEntity);
+
+            siteEntity.setStatus(StatusType.INDEXED);
+            siteRepository.save(siteEntity);
+            log.info("Page saved in DB: {}", page);
+        } catch (IOException ex) {
+            log.error("Failed to fetch page {}: {}", page, ex.getMessage(), ex);
+        } catch (RuntimeException ex) {
+            log.error("Failed to index page {}: {}", page, ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("Indexing of page {} interrupted", page);
+        } finally {
+            cleanupAfterParsing();
+        }
     }
 
     private SiteEntity createSite(Site site) {
         SiteEntity siteEntity = new SiteEntity();
         siteEntity.setUrl(site.getUrl());
         siteEntity.setName(site.getName());
-        siteEntity.setStatus(StatusType.INDEXING);
-        siteEntity.setStatusTime(Date.from(Instant.now()));
+        setCrawlStatus(siteEntity, StatusType.INDEXING);
         return siteEntity;
     }
 
@@ -190,6 +471,7 @@ public class IndexingServiceImpl implements IndexingService {
         siteEntity.setName(nameSite);
         siteEntity.setStatus(StatusType.INDEXING);
         siteEntity.setStatusTime(Date.from(Instant.now()));
+        siteEntity.setLive(true);
         return siteEntity;
     }
 
@@ -197,85 +479,211 @@ public class IndexingServiceImpl implements IndexingService {
         PageEntity pageEntity = new PageEntity();
         pageEntity.setSiteId(siteEntity);
         pageEntity.setContent(page.getContent());
-        pageEntity.setPath(getPathAddress(page.getPath()));
+        if (page.getText() == null) {
+            Document document = Jsoup.parse(page.getContent(), page.getPath());
+            page.setTitle(document.title());
+            page.setText(document.text());
+        }
+        pageEntity.setTitle(truncate(page.getTitle(), TITLE_LENGTH));
+        pageEntity.setText(page.getText());
+        pageEntity.setPath(UrlCanonicalizer.pathKey(page.getPath()));
         pageEntity.setCode(page.getStatusCode());
+        pageEntity.setEtag(page.getEtag());
+        pageEntity.setLastModified(page.getLastModified());
+        pageEntity.setContentHash(contentHash(page.getContent()));
         return pageEntity;
     }
 
     /**
-     * Сохраняет сайт в базу данных
+     * Возвращает SHA-256 контента страницы в шестнадцатеричном виде
+     *
+     * @param content контент страницы
+     * @return String
+     */
+    private String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Сохраняет сайты в базу данных и возвращает поколения индекса, которые нужно обойти.
+     * При полной переиндексации проиндексированного сайта создаётся новое поколение,
+     * а поиск до завершения обхода продолжает работать по действующему
+     *
+     * @param resume сохранить сайты, обход которых можно продолжить по журналу
+     * @return поколения сайтов для обхода
      */
-    private void saveSitesInDB() {
+    private List<SiteEntity> saveSitesInDB(boolean resume) {
         List<Site> siteList = sites.getSites();
+        List<SiteEntity> generations = new ArrayList<>();
 
         if (siteList == null || siteList.isEmpty()) {
             log.warn("No sites found for saving in DB");
-            return;
+            return generations;
         }
 
         siteList.forEach(site -> {
-            SiteEntity existingSite = siteRepository.findByUrl(site.getUrl());
-
-            if (existingSite != null) {
-                log.info("Site already exists: {}", site.getUrl());
-                deleteSite(site);
+            CrawlJournal journal = journalFor(site.getUrl());
+            boolean resuming = resume && journal.exists();
+            if (resuming && siteRepository.findFirstByUrlOrderByIdDesc(site.getUrl()) == null) {
+                log.warn("Site {} is missing in DB, its crawl journal is discarded and the site is crawled in full",
+                        site.getUrl());
+                journal.delete();
+                resuming = false;
+            }
+            if (!resuming) {
+                indexGenerations.dropRetired(site.getUrl());
+            }
+            SiteEntity existingSite = resuming
+                    ? siteRepository.findFirstByUrlOrderByIdDesc(site.getUrl())
+                    : siteRepository.findByUrlAndLiveTrue(site.getUrl());
+
+            boolean keepSite = crawlerSettings.isIncremental() || resuming;
+            if (existingSite != null && keepSite) {
+                log.info("Site already exists, continuing without deletion: {}", site.getUrl());
+                setCrawlStatus(existingSite, StatusType.INDEXING);
+                existingSite.setLastError(null);
+                generations.add(siteRepository.save(existingSite));
+            } else if (existingSite != null) {
+                log.info("Site already exists, building a new index generation: {}", site.getUrl());
+                SiteEntity generation = createSite(site);
+                generation.setLive(false);
+                generations.add(siteRepository.save(generation));
             } else {
                 log.info("Creating new site: {}", site.getUrl());
                 SiteEntity newSiteEntity = createSite(site);
-                siteRepository.save(newSiteEntity);
+                newSiteEntity.setLive(true);
+                generations.add(siteRepository.save(newSiteEntity));
             }
         });
 
         log.info("Finished saving sites in DB. Total: {}", siteList.size());
+        return generations;
     }
 
     /**
-     * Сохраняет все страницы сайта в базу данных
+     * Стадия лемматизации конвейера: создаёт страницу и извлекает её леммы.
+     * При инкрементальном обходе неизменившиеся страницы (ответ 304 или
+     * совпадающий хеш контента) пропускаются, у них обновляются только ETag и Last-Modified.
+     * Почти дубликаты уже обработанных страниц (по SimHash текста) и ресурсы,
+     * не являющиеся HTML-страницами, не сохраняются. Страницы без слов не проверяются
+     * на почти дубликаты: их отпечатки совпадают. Если изменившаяся страница
+     * стала почти дубликатом, её сохранённая версия удаляется из индекса
      *
-     * @param pageEntities таблица страниц в базе данных
+     * @param page         скачанная страница
+     * @param siteEntity   сайт
+     * @param recrawlState сохранённые ранее страницы сайта
+     * @param fingerprints отпечатки страниц текущего обхода
+     * @return страница с леммами, удаление сохранённой версии или null, если ничего сохранять не нужно
      */
-    private void savePageInDB(Set<PageEntity> pageEntities) {
-        try {
-            int batchSize = 100;
-            int totalPages = pageEntities.size();
-
-            List<PageEntity> pageList = new ArrayList<>(pageEntities);
+    private ProcessedPage lemmatizePage(Page page,
+                                        SiteEntity siteEntity,
+                                        RecrawlState recrawlState,
+                                        FingerprintIndex fingerprints) {
+        if (!page.getPath().startsWith(siteEntity.getUrl())
+                || !page.isHtml()
+                || page.getStatusCode() == CrawlContext.HTTP_NOT_MODIFIED
+                || PolitenessScheduler.isThrottled(page.getStatusCode())) {
+            return null;
+        }
+        PageEntity pageEntity = createPage(page, siteEntity);
+        PageValidators stored = recrawlState.find(page.getPath());
+        if (stored != null && pageEntity.getContentHash().equals(stored.getContentHash())) {
+            pageRepository.updateValidators(stored.getId(), pageEntity.getEtag(), pageEntity.getLastModified());
+            return null;
+        }
+        if (crawlerSettings.isNearDuplicateDetection()
+                && pageEntity.getCode() == 200
+                && SimHash.hasWords(pageEntity.getText())
+                && !fingerprints.addIfUnique(SimHash.fingerprint(pageEntity.getText()))) {
+            log.info("Near-duplicate page skipped: {}", page.getPath());
+            return stored == null ? null : ProcessedPage.removal(page.getPath(), stored.getId());
+        }
+        Map<String, int[]> lemmas = pageEntity.getCode() == 200
+                ? lemmaMorphology.collectLemmaPositions(pageEntity.getText())
+                : Map.of();
+        return new ProcessedPage(page.getPath(), pageEntity, lemmas, stored == null ? null : stored.getId());
+    }
 
-            for (int i = 0; i < totalPages; i += batchSize) {
-                int end = Math.min(i + batchSize, totalPages);
-                pageRepository.saveAll(pageList.subList(i, end));
-            }
+    /**
+     * Стадия сохранения конвейера: сохраняет порцию страниц, новые и изменённые леммы
+     * и индексные записи. Вызывается только из потока записи конвейера в одной транзакции
+     * на порцию: при ошибке порция откатывается целиком и не отмечается в журнале
+     *
+     * @param batch          порция обработанных страниц
+     * @param lemmaEntityMap леммы сайта, накопленные с начала обхода
+     */
+    private void saveProcessedPages(List<ProcessedPage> batch, Map<String, LemmaEntity> lemmaEntityMap) {
+        Set<LemmaEntity> changedLemmas = new LinkedHashSet<>();
+        batch.stream()
+                .map(ProcessedPage::getReplacedPageId)
+                .filter(Objects::nonNull)
+                .forEach(pageId -> removePageFromIndex(pageId, lemmaEntityMap, changedLemmas));
 
-            log.info("Successfully saved {} pages in DB.", totalPages);
-        } catch (Exception e) {
-            log.error("Error saving pages to DB: {}", e.getMessage());
-            throw new RuntimeException("Failed to save pages to DB", e);
+        List<ProcessedPage> savedPages = batch.stream()
+                .filter(processedPage -> !processedPage.isRemoval())
+                .toList();
+        List<PageEntity> pageEntities = savedPages.stream()
+                .map(ProcessedPage::getPageEntity)
+                .toList();
+        if (!pageEntities.isEmpty()) {
+            batchSave(pageEntities, pageRepository);
         }
-    }
 
-    private void processAndSavePages(Set<PageEntity> pageEntities, SiteEntity siteEntity) {
-        try {
-            savePageInDB(pageEntities);
+        Map<PageEntity, Map<String, int[]>> pageLemmas = new LinkedHashMap<>();
+        savedPages.forEach(processedPage -> pageLemmas.put(processedPage.getPageEntity(), processedPage.getLemmas()));
+        List<IndexEntity> indexEntityList = processLemmasAndIndexes(pageLemmas, lemmaEntityMap);
 
-            if (pageEntities.size() > 1) {
-                saveLemmaAndIndexSite(siteEntity);
-            } else {
-                pageEntities.forEach(this::saveLemmaAndIndexPage);
-            }
+        indexEntityList.forEach(indexEntity -> changedLemmas.add(indexEntity.getLemmaId()));
+        indexWriter.saveLemmas(changedLemmas);
+        indexWriter.saveIndexes(indexEntityList);
+        log.info("Saved {} pages, {} index entries", pageEntities.size(), indexEntityList.size());
+    }
 
-            siteEntity.setStatus(StatusType.INDEXED);
+    /**
+     * Удаляет сохранённые страницы, которые не были найдены при инкрементальном обходе
+     *
+     * @param siteEntity     сайт
+     * @param recrawlState   состояние инкрементального обхода
+     * @param lemmaEntityMap леммы сайта
+     */
+    private void removeUnseenPages(SiteEntity siteEntity, RecrawlState recrawlState, Map<String, LemmaEntity> lemmaEntityMap) {
+        Set<LemmaEntity> changedLemmas = new LinkedHashSet<>();
+        Collection<PageValidators> unseenPages = recrawlState.unseenPages();
+        unseenPages.forEach(page -> removePageFromIndex(page.getId(), lemmaEntityMap, changedLemmas));
+        indexWriter.saveLemmas(changedLemmas);
+        lemmaRepository.deleteWhereFrequencyZero(siteEntity.getId());
+        log.info("Removed {} pages that disappeared from the site", unseenPages.size());
+    }
 
-            siteRepository.save(siteEntity);
-            log.info("Successfully saved {} pages in DB for site: {}", pageEntities.size(), siteEntity.getUrl());
-        } catch (Exception ex) {
-            log.error("Error while processing pages for site {}: {}", siteEntity.getUrl(), ex.getMessage(), ex);
-            throw ex;
+    /**
+     * Удаляет страницу вместе с её индексными записями и уменьшает частоту её лемм
+     * в коллекции лемм сайта. Изменённые леммы добавляются в changedLemmas для сохранения
+     *
+     * @param pageId         идентификатор страницы
+     * @param lemmaEntityMap леммы сайта
+     * @param changedLemmas  изменённые леммы
+     */
+    private void removePageFromIndex(int pageId, Map<String, LemmaEntity> lemmaEntityMap, Set<LemmaEntity> changedLemmas) {
+        for (String lemma : indexRepository.findLemmasByPageId(pageId)) {
+            LemmaEntity lemmaEntity = lemmaEntityMap.get(lemma);
+            if (lemmaEntity != null) {
+                lemmaEntity.setFrequency(Math.max(lemmaEntity.getFrequency() - 1, 0));
+                changedLemmas.add(lemmaEntity);
+            }
         }
+        indexRepository.deleteByPageId(pageId);
+        pageRepository.deletePageById(pageId);
     }
 
     /**
      * Метод обрабатывает одну страницу, извлекает леммы и индексные записи,
-     * а затем сохраняет их в базу данных
+     * а затем сохраняет их в базу данных. Частоты обновляются только у лемм
+     * этой страницы, остальные леммы сайта не загружаются
      *
      * @param pageEntity страница сайта
      */
@@ -284,84 +692,68 @@ public class IndexingServiceImpl implements IndexingService {
             return;
         }
 
-        Map<String, LemmaEntity> lemmaEntityMap = loadExistingLemmas(pageEntity.getSiteId());
-        List<IndexEntity> indexEntityList = new ArrayList<>();
-
-        processLemmasAndIndexes(pageEntity, lemmaEntityMap, indexEntityList);
-
-        if (!lemmaEntityMap.isEmpty()) {
-            batchSave(new ArrayList<>(lemmaEntityMap.values()), lemmaRepository);
-        }
-
-        if (!indexEntityList.isEmpty()) {
-            batchSave(indexEntityList, indexRepository);
-        }
+        Map<String, int[]> lemmas = lemmaMorphology.collectLemmaPositions(pageEntity.getText());
+        Map<String, LemmaEntity> lemmaEntityMap = indexWriter.upsertLemmas(pageEntity.getSiteId(), lemmas.keySet());
+        indexWriter.saveIndexes(createIndexes(Map.of(pageEntity, lemmas), lemmaEntityMap));
     }
 
     /**
-     * Метод выполняет индексацию всех страниц сайта, извлекает леммы,
-     * создает индексные записи и сохраняет их в базе данных
+     * Обновление связанных сущностей LemmaEntity и IndexEntity по леммам страниц.
+     * Частоты лемм подсчитываются параллельно и применяются к коллекции лемм
+     * в вызывающем потоке, после чего индексные записи страниц создаются
+     * параллельно: коллекция лемм на этом шаге только читается
      *
-     * @param siteEntity сайт
-     */
-    private void saveLemmaAndIndexSite(SiteEntity siteEntity) {
-        Map<String, LemmaEntity> lemmaEntityMap = new HashMap<>();
-        List<IndexEntity> indexEntityList = new ArrayList<>();
-
-        pageRepository.findAllBySiteId(siteEntity).parallelStream()
-                .filter(pageEntity -> pageEntity.getCode() == 200)
-                .forEach(pageEntity -> processLemmasAndIndexes(pageEntity, lemmaEntityMap, indexEntityList));
-
-        batchSave(new ArrayList<>(lemmaEntityMap.values()), lemmaRepository);
-        batchSave(indexEntityList, indexRepository);
-    }
-
-    /**
-     * Анализ содержимого страницы, извлечение леммы и обновление связанных сущностей LemmaEntity и IndexEntity
-     *
-     * @param pageEntity      страница сайта
+     * @param pages           страницы сайта и позиции их лемм
      * @param lemmaEntityMap  коллекция лемм
-     * @param indexEntityList список индексов
+     * @return список индексов
      */
-    private void processLemmasAndIndexes(PageEntity pageEntity,
-                                         Map<String, LemmaEntity> lemmaEntityMap,
-                                         List<IndexEntity> indexEntityList) {
-        if (pageEntity.getCode() == 200) {
-            String content = pageEntity.getContent();
-            Map<String, Integer> lemmas = lemmaMorphology.collectLemmas(content);
-            lemmas.forEach((lemma, count) -> {
-                LemmaEntity lemmaEntity = lemmaEntityMap.get(lemma);
-                if (lemmaEntity == null) {
-                    LemmaEntity newLemmaEntity = new LemmaEntity();
-                    newLemmaEntity.setLemma(lemma);
-                    newLemmaEntity.setSiteId(pageEntity.getSiteId());
-                    newLemmaEntity.setFrequency(1);
-                    lemmaEntityMap.put(lemma, newLemmaEntity);
-                } else {
-                    lemmaEntity.setFrequency(lemmaEntity.getFrequency() + 1);
-                }
-                IndexEntity indexEntity = new IndexEntity();
-                indexEntity.setPageId(pageEntity);
-                indexEntity.setLemmaId(lemmaEntityMap.get(lemma));
-                indexEntity.setRank(count);
-                indexEntityList.add(indexEntity);
-            });
+    private List<IndexEntity> processLemmasAndIndexes(Map<PageEntity, Map<String, int[]>> pages,
+                                                      Map<String, LemmaEntity> lemmaEntityMap) {
+        Map<PageEntity, Map<String, int[]>> indexedPages = new LinkedHashMap<>();
+        pages.forEach((pageEntity, lemmas) -> {
+            if (pageEntity.getCode() == 200 && !lemmas.isEmpty()) {
+                indexedPages.put(pageEntity, lemmas);
+            }
+        });
+        if (indexedPages.isEmpty()) {
+            return new ArrayList<>();
         }
+        SiteEntity siteEntity = indexedPages.keySet().iterator().next().getSiteId();
+        LemmaAggregator.documentFrequencies(indexedPages.values()).forEach((lemma, count) -> {
+            LemmaEntity lemmaEntity = lemmaEntityMap.get(lemma);
+            if (lemmaEntity == null) {
+                LemmaEntity newLemmaEntity = new LemmaEntity();
+                newLemmaEntity.setLemma(lemma);
+                newLemmaEntity.setSiteId(siteEntity);
+                newLemmaEntity.setFrequency(count);
+                lemmaEntityMap.put(lemma, newLemmaEntity);
+            } else {
+                lemmaEntity.setFrequency(lemmaEntity.getFrequency() + count);
+            }
+        });
+        return createIndexes(indexedPages, lemmaEntityMap);
     }
 
     /**
-     * Проверка сайта в базе данных, если такой сайт уже существует в базе данных, то происходит его удаление
+     * Создаёт индексные записи страниц параллельно. Все леммы страниц
+     * должны быть в коллекции лемм, которая здесь только читается
      *
-     * @param site адрес сайта
+     * @param pages          страницы сайта и позиции их лемм
+     * @param lemmaEntityMap коллекция лемм
+     * @return список индексов
      */
-    private void deleteSite(Site site) {
-        if (siteRepository.findByUrl(site.getUrl()) != null) {
-            log.info("Deleting site from DB: {}", site.getUrl());
-            siteRepository.deleteByUrl(site.getUrl());
-            log.info("Site deleted successfully: {}", site.getUrl());
-        } else {
-            log.warn("Site not found in DB: {}", site.getUrl());
-        }
+    private List<IndexEntity> createIndexes(Map<PageEntity, Map<String, int[]>> pages,
+                                            Map<String, LemmaEntity> lemmaEntityMap) {
+        return pages.entrySet().parallelStream()
+                .flatMap(page -> page.getValue().entrySet().stream().map(lemma -> {
+                    IndexEntity indexEntity = new IndexEntity();
+                    indexEntity.setPageId(page.getKey());
+                    indexEntity.setLemmaId(lemmaEntityMap.get(lemma.getKey()));
+                    indexEntity.setRank(lemma.getValue().length);
+                    indexEntity.setPositions(PositionCodec.encode(lemma.getValue()));
+                    return indexEntity;
+                }))
+                .collect(Collectors.toList());
     }
 
     /**
@@ -373,17 +765,12 @@ public class IndexingServiceImpl implements IndexingService {
     private void deletePage(PageEntity page) {
         log.info("Deleting page: {}", page.getPath());
 
-        List<IndexEntity> indexTables = indexRepository.findAllByPageId(page);
-        List<LemmaEntity> lemmaTables = indexTables.stream()
-                .map(IndexEntity::getLemmaId)
-                .toList();
-
-        indexRepository.deleteByPageId(page);
-        lemmaRepository.decrementFrequencyForLemmas(lemmaTables);
-        lemmaRepository.deleteWhereFrequencyZero();
+        lemmaRepository.decrementFrequencyForPage(page.getId());
+        indexRepository.deleteByPageId(page.getId());
+        lemmaRepository.deleteWhereFrequencyZero(page.getSiteId().getId());
 
         log.info("Trying to delete page from DB: {}", page.getPath());
-        pageRepository.deleteById(page.getId());
+        pageRepository.deletePageById(page.getId());
 
         if (pageRepository.existsById(page.getId())) {
             log.error("Page {} was not deleted!", page.getPath());
@@ -423,20 +810,8 @@ public class IndexingServiceImpl implements IndexingService {
         }
     }
 
-    /**
-     * Возвращает адрес страницы от корня сайта
-     *
-     * @param url URL-адрес
-     * @return /example/372189/.../
-     */
-    private String getPathAddress(String url) {
-        try {
-            URL uri = new URL(url);
-            return uri.getPath();
-        } catch (MalformedURLException ex) {
-            log.error("Error URL: {}", ex.getMessage(), ex);
-            throw new RuntimeException();
-        }
+    private static String truncate(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
     }
 
     /**
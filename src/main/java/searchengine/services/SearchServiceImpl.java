@@ -3,7 +3,6 @@ package searchengine.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import searchengine.dto.search.SearchData;
@@ -11,10 +10,12 @@ import searchengine.dto.search.SearchResponse;
 import searchengine.model.IndexEntity;
 import searchengine.model.LemmaEntity;
 import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
 import searchengine.model.StatusType;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.indexing.PositionCodec;
 import searchengine.services.morphology.LemmaMorphology;
 
 import java.math.BigDecimal;
@@ -39,6 +40,9 @@ public class SearchServiceImpl implements SearchService {
 
     @Override
     public SearchResponse findByLemma(String query, String site, int offset, int limit) {
+        if (!lemmaMorphology.isReady()) {
+            return new SearchResponse(false, lemmaMorphology.notReadyError());
+        }
         if (site != null && !isIndexed(site)) {
             return new SearchResponse(false, "Индекс для сайта " + site + " не готов или отсутствует");
         }
@@ -52,7 +56,7 @@ public class SearchServiceImpl implements SearchService {
 
         List<PageEntity> relevantPages = findSequentiallyRelevantPages(filteredLemmas, site);
 
-        relevantPages = filterPagesByProximity(relevantPages, query);
+        relevantPages = filterPagesByProximity(relevantPages, filteredLemmas);
 
         Map<PageEntity, Double> relevanceScores = calculateRelevanceScores(relevantPages, filteredLemmas);
 
@@ -74,13 +78,13 @@ public class SearchServiceImpl implements SearchService {
         for (var entry : paginatedPages) {
             PageEntity page = entry.getKey();
             double relevance = entry.getValue();
-            String snippet = generateSnippet(page.getContent(), query);
+            String snippet = generateSnippet(textOf(page), query);
 
             SearchData searchData = new SearchData();
             searchData.setSite(page.getSiteId().getUrl());
             searchData.setSiteName(page.getSiteId().getName());
             searchData.setUri(page.getPath());
-            searchData.setTitle(extractTitle(page.getContent()));
+            searchData.setTitle(titleOf(page));
             searchData.setSnippet(snippet);
             searchData.setRelevance(relevance);
             result.add(searchData);
@@ -91,15 +95,28 @@ public class SearchServiceImpl implements SearchService {
         return searchResponse;
     }
 
-    private String extractTitle(String content) {
-        Document doc = Jsoup.parse(content);
-        return doc.title();
+    /**
+     * Заголовок страницы, извлечённый при индексации
+     *
+     * @param page страница
+     * @return String
+     */
+    private String titleOf(PageEntity page) {
+        return page.getTitle() != null ? page.getTitle() : Jsoup.parse(page.getContent()).title();
     }
 
-    private String generateSnippet(String content, String query) {
-        Document doc = Jsoup.parse(content);
-        String textContent = doc.text();
+    /**
+     * Видимый текст страницы, извлечённый при индексации. Для страниц,
+     * сохранённых без текста, он извлекается из HTML-кода
+     *
+     * @param page страница
+     * @return String
+     */
+    private String textOf(PageEntity page) {
+        return page.getText() != null ? page.getText() : Jsoup.parse(page.getContent()).text();
+    }
 
+    private String generateSnippet(String textContent, String query) {
         String[] queryWords = query.split("\\s+");
 
         StringBuilder regexBuilder = new StringBuilder();
@@ -160,35 +177,78 @@ public class SearchServiceImpl implements SearchService {
         return relativeRelevanceScores;
     }
 
-    private List<PageEntity> filterPagesByProximity(List<PageEntity> pages, String query) {
+    /**
+     * Оставляет страницы, на которых леммы запроса встречаются рядом. Проверка
+     * выполняется по позициям лемм из индекса, без чтения текста страниц.
+     * Позиции декодируются только у записей индекса страниц-кандидатов.
+     * Страницы, проиндексированные без позиций, не отбрасываются
+     *
+     * @param pages          страницы, содержащие все леммы запроса
+     * @param filteredLemmas леммы запроса
+     * @return List
+     */
+    private List<PageEntity> filterPagesByProximity(List<PageEntity> pages, List<LemmaEntity> filteredLemmas) {
+        Set<Integer> candidateIds = new HashSet<>(pages.size() * 2);
+        pages.forEach(page -> candidateIds.add(page.getId()));
+        Map<Integer, Map<String, int[]>> positionsByPage = new HashMap<>();
+        Set<Integer> pagesWithoutPositions = new HashSet<>();
+        for (var lemma : filteredLemmas) {
+            for (var index : lemma.getIndexLemmas()) {
+                int pageId = index.getPageId().getId();
+                if (!candidateIds.contains(pageId)) {
+                    continue;
+                }
+                if (index.getPositions() == null) {
+                    pagesWithoutPositions.add(pageId);
+                } else {
+                    positionsByPage.computeIfAbsent(pageId, id -> new HashMap<>())
+                            .put(lemma.getLemma(), PositionCodec.decode(index.getPositions()));
+                }
+            }
+        }
         List<PageEntity> filteredPages = new ArrayList<>();
-        String[] queryWords = query.toLowerCase().split("\\s+");
-
         for (var page : pages) {
-            String content = Jsoup.parse(page.getContent()).text().toLowerCase();
-            if (areWordsInProximity(content, queryWords)) {
+            Map<String, int[]> positions = positionsByPage.getOrDefault(page.getId(), Map.of());
+            if (pagesWithoutPositions.contains(page.getId()) || areWordsInProximity(positions.values())) {
                 filteredPages.add(page);
             }
         }
         return filteredPages;
     }
 
-    private boolean areWordsInProximity(String content, String[] queryWords) {
-        List<Integer> positions = new ArrayList<>();
-        for (var word : queryWords) {
-            int position = content.indexOf(word);
-            if (position == -1) {
-                return false;
-            }
-            positions.add(position);
+    /**
+     * Проверяет, что в тексте есть фрагмент, содержащий каждую лемму и не длиннее
+     * {@code MAX_DISTANCE_BETWEEN_WORDS} слов на каждую пару соседних лемм.
+     * Кратчайший такой фрагмент ищется слиянием возрастающих списков позиций
+     *
+     * @param lemmaPositions позиции каждой леммы по возрастанию
+     * @return boolean
+     */
+    private boolean areWordsInProximity(Collection<int[]> lemmaPositions) {
+        if (lemmaPositions.size() < 2) {
+            return true;
         }
-        Collections.sort(positions);
-        for (int i = 0; i < positions.size() - 1; i++) {
-            if (positions.get(i + 1) - positions.get(i) > MAX_DISTANCE_BETWEEN_WORDS + queryWords[i].length()) {
-                return false;
+        int[][] lists = lemmaPositions.toArray(new int[0][]);
+        int[] cursors = new int[lists.length];
+        int maxSpan = MAX_DISTANCE_BETWEEN_WORDS * (lists.length - 1);
+        while (true) {
+            int minList = 0;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < lists.length; i++) {
+                if (cursors[i] >= lists[i].length) {
+                    return false;
+                }
+                int position = lists[i][cursors[i]];
+                if (position < lists[minList][cursors[minList]]) {
+                    minList = i;
+                }
+                max = Math.max(max, position);
+            }
+            if (max - lists[minList][cursors[minList]] <= maxSpan) {
+                return true;
             }
+            cursors[minList]++;
         }
-        return true;
     }
 
     private List<PageEntity> findSequentiallyRelevantPages(List<LemmaEntity> filteredLemmas, String site) {
@@ -247,25 +307,26 @@ public class SearchServiceImpl implements SearchService {
     /**
      * Возвращает сортированный список лемм в порядке увеличения частоты встречаемости
      * (по возрастанию значения поля frequency) — от самых редких до
-     * самых частых.
+     * самых частых. Учитываются только действующие поколения индекса сайтов.
      *
      * @param lemmaMap коллекция лемм
      * @return List
      */
     private List<LemmaEntity> filterLemmasByFrequency(HashMap<String, Integer> lemmaMap) {
         Set<String> allLemmas = lemmaMap.keySet();
-        return lemmaRepository.findByLemmaInAndFrequencyGreaterThanOrderByFrequencyAsc(allLemmas,
+        return lemmaRepository.findByLemmaInAndFrequencyGreaterThanAndSiteIdLiveTrueOrderByFrequencyAsc(allLemmas,
                 MIN_FREQUENCY_THRESHOLD,
                 PageRequest.of(PAGE_NUMBER, PAGE_SIZE));
     }
 
     /**
-     * Проверяет статус индексации
+     * Проверяет статус индексации действующего поколения индекса сайта
      *
      * @param siteUrl адрес сайта
      * @return boolean
      */
     private boolean isIndexed(String siteUrl) {
-        return siteRepository.findByUrl(siteUrl).getStatus().equals(StatusType.INDEXED);
+        SiteEntity siteEntity = siteRepository.findByUrlAndLiveTrue(siteUrl);
+        return siteEntity != null && siteEntity.getStatus().equals(StatusType.INDEXED);
     }
 }
@@ -9,12 +9,16 @@ import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.SiteEntity;
+import searchengine.model.StatusType;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 @Service
@@ -28,7 +32,7 @@ public class StatisticsServiceImpl implements StatisticsService {
     @Override
     public StatisticsResponse getStatistics() {
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        List<SiteEntity> sitesList = siteRepository.findAll();
+        Collection<SiteEntity> sitesList = latestGenerations(siteRepository.findAll());
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(sitesList.size());
@@ -42,7 +46,7 @@ public class StatisticsServiceImpl implements StatisticsService {
             int lemmas = lemmaRepository.countBySiteId(site);
             item.setPages(pages);
             item.setLemmas(lemmas);
-            item.setStatus(site.getStatus().toString());
+            item.setStatus(statusOf(site).toString());
             item.setError(site.getLastError());
             item.setStatusTime(site.getStatusTime().getTime());
             total.setPages(total.getPages() + pages);
@@ -58,4 +62,29 @@ public class StatisticsServiceImpl implements StatisticsService {
         response.setResult(true);
         return response;
     }
+
+    /**
+     * Статус для статистики: ход последнего обхода, если он известен, иначе готовность к поиску
+     *
+     * @param site сайт
+     * @return StatusType
+     */
+    private static StatusType statusOf(SiteEntity site) {
+        return site.getCrawlStatus() != null ? site.getCrawlStatus() : site.getStatus();
+    }
+
+    /**
+     * Оставляет по одному поколению индекса на сайт — последнее созданное.
+     * Во время переиндексации это строящееся поколение, его и показывает статистика
+     *
+     * @param siteEntities все поколения сайтов
+     * @return Collection
+     */
+    private Collection<SiteEntity> latestGenerations(List<SiteEntity> siteEntities) {
+        Map<String, SiteEntity> latest = new LinkedHashMap<>();
+        for (var site : siteEntities) {
+            latest.merge(site.getUrl(), site, (first, second) -> first.getId() >= second.getId() ? first : second);
+        }
+        return latest.values();
+    }
 }
@@ -0,0 +1,74 @@
+package searchengine.services.indexing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Индекс отпечатков SimHash страниц одного обхода для поиска почти дубликатов.
+ * <p>
+ * Отпечаток делится на {@code maxDistance + 1} полос. Если два отпечатка
+ * отличаются не более чем в {@code maxDistance} битах, хотя бы одна полоса
+ * у них совпадает, поэтому сравнивать нужно только отпечатки с общей полосой
+ */
+public class FingerprintIndex {
+    private final int maxDistance;
+    private final int bands;
+    private final int bandBits;
+    private final Map<Long, List<Long>> buckets = new HashMap<>();
+    private final AtomicLong duplicates = new AtomicLong();
+    private int size;
+
+    /**
+     * @param maxDistance максимальное расстояние Хэмминга между почти дубликатами
+     */
+    public FingerprintIndex(int maxDistance) {
+        this.maxDistance = Math.max(0, Math.min(maxDistance, 15));
+        this.bands = this.maxDistance + 1;
+        this.bandBits = Long.SIZE / bands;
+    }
+
+    /**
+     * Добавляет отпечаток, если в индексе нет близкого к нему
+     *
+     * @param fingerprint отпечаток страницы
+     * @return false, если страница — почти дубликат уже добавленной
+     */
+    public synchronized boolean addIfUnique(long fingerprint) {
+        long[] keys = bandKeys(fingerprint);
+        for (long key : keys) {
+            for (long candidate : buckets.getOrDefault(key, List.of())) {
+                if (SimHash.distance(candidate, fingerprint) <= maxDistance) {
+                    duplicates.incrementAndGet();
+                    return false;
+                }
+            }
+        }
+        for (long key : keys) {
+            buckets.computeIfAbsent(key, k -> new ArrayList<>(1)).add(fingerprint);
+        }
+        size++;
+        return true;
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private long[] bandKeys(long fingerprint) {
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            int shift = band * bandBits;
+            int width = band == bands - 1 ? Long.SIZE - shift : bandBits;
+            long mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+            keys[band] = ((long) band << 56) ^ ((fingerprint >>> shift) & mask);
+        }
+        return keys;
+    }
+}
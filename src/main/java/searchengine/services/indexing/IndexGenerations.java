@@ -0,0 +1,109 @@
+package searchengine.services.indexing;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.StorageSettings;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Поколения индекса сайта.
+ * <p>
+ * Полная переиндексация строит новое поколение — отдельную запись сайта
+ * со своими страницами, леммами и индексом, — пока поиск продолжает работать
+ * по действующему поколению. Когда обход завершён, поколения переключаются
+ * одним UPDATE, а прежнее поколение удаляется в фоновом потоке
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexGenerations {
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final StorageSettings storageSettings;
+    private final ExecutorService cleaner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-generation-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * Делает поколение действующим и удаляет в фоне прежние поколения сайта
+     *
+     * @param generation построенное поколение
+     */
+    public void activate(SiteEntity generation) {
+        siteRepository.activateGeneration(generation.getUrl(), generation.getId());
+        generation.setLive(true);
+        List<SiteEntity> retired = siteRepository.findByUrlAndLiveFalse(generation.getUrl());
+        log.info("Index generation {} of site {} is live, {} retired generations will be dropped",
+                generation.getId(), generation.getUrl(), retired.size());
+        cleaner.execute(() -> retired.forEach(this::delete));
+    }
+
+    /**
+     * Удаляет недействующие поколения сайта, например оставшиеся от прерванной переиндексации
+     *
+     * @param url адрес сайта
+     */
+    public void dropRetired(String url) {
+        siteRepository.findByUrlAndLiveFalse(url).forEach(this::delete);
+    }
+
+    /**
+     * Удаляет поколение сайта набором запросов DELETE с ограничением LIMIT,
+     * не загружая страницы, леммы и индекс в память
+     *
+     * @param siteEntity поколение сайта
+     */
+    public void delete(SiteEntity siteEntity) {
+        log.info("Deleting index generation {} of site {}", siteEntity.getId(), siteEntity.getUrl());
+        long start = System.currentTimeMillis();
+        int siteId = siteEntity.getId();
+        try {
+            long indexes = deleteInChunks(limit -> indexRepository.deleteChunkBySiteId(siteId, limit));
+            long lemmas = deleteInChunks(limit -> lemmaRepository.deleteChunkBySiteId(siteId, limit));
+            long pages = deleteInChunks(limit -> pageRepository.deleteChunkBySiteId(siteId, limit));
+            siteRepository.deleteSiteById(siteId);
+            log.info("Index generation {} of site {} deleted ({} pages, {} lemmas, {} index entries in {} ms)",
+                    siteId, siteEntity.getUrl(), pages, lemmas, indexes, System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            log.error("Failed to delete index generation {} of site {}: {}", siteId, siteEntity.getUrl(), ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Удаляет строки запросом с ограничением LIMIT, пока он удаляет полную порцию.
+     * Каждая порция удаляется в отдельной транзакции
+     *
+     * @param deleteChunk удаление порции не больше заданного числа строк
+     * @return количество удалённых строк
+     */
+    private long deleteInChunks(IntUnaryOperator deleteChunk) {
+        int chunkSize = Math.max(storageSettings.getDeleteChunkSize(), 1);
+        long total = 0;
+        int deleted;
+        do {
+            deleted = deleteChunk.applyAsInt(chunkSize);
+            total += deleted;
+        } while (deleted == chunkSize);
+        return total;
+    }
+}
@@ -0,0 +1,125 @@
+package searchengine.services.indexing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexWriteMode;
+import searchengine.config.StorageSettings;
+import searchengine.model.IndexEntity;
+import searchengine.model.LemmaEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexJdbcRepository;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Запись лемм и индексных записей в базу данных через JPA или пакетами JDBC,
+ * в зависимости от {@code storage-settings.index-write-mode}.
+ * Ведёт счётчики записанных строк и затраченного времени.
+ * Ошибки записи не перехватываются: леммы, не получившие идентификаторов,
+ * нельзя использовать в индексных записях, поэтому сохранение порции прерывается
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexWriter {
+    private final StorageSettings storageSettings;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final IndexJdbcRepository indexJdbcRepository;
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    /**
+     * Сохраняет новые и изменённые леммы. Новым леммам присваиваются идентификаторы
+     *
+     * @param lemmas леммы
+     */
+    public void saveLemmas(Collection<LemmaEntity> lemmas) {
+        if (lemmas.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (storageSettings.getIndexWriteMode() == IndexWriteMode.JPA) {
+            forEachBatch(new ArrayList<>(lemmas), lemmaRepository::saveAll);
+        } else {
+            List<LemmaEntity> newLemmas = new ArrayList<>();
+            List<LemmaEntity> storedLemmas = new ArrayList<>();
+            lemmas.forEach(lemma -> (lemma.getId() == 0 ? newLemmas : storedLemmas).add(lemma));
+            forEachBatch(newLemmas, indexJdbcRepository::insertLemmas);
+            forEachBatch(storedLemmas, indexJdbcRepository::updateFrequencies);
+        }
+        record("lemma", lemmas.size(), start);
+    }
+
+    /**
+     * Увеличивает частоту лемм одной страницы запросами INSERT ... ON DUPLICATE KEY UPDATE,
+     * не загружая остальные леммы сайта. Выполняется через JDBC при любом способе записи
+     *
+     * @param siteEntity сайт
+     * @param lemmas     леммы страницы
+     * @return сохранённые леммы страницы
+     */
+    public Map<String, LemmaEntity> upsertLemmas(SiteEntity siteEntity, Collection<String> lemmas) {
+        Map<String, LemmaEntity> lemmaEntityMap = new HashMap<>();
+        if (lemmas.isEmpty()) {
+            return lemmaEntityMap;
+        }
+        long start = System.nanoTime();
+        forEachBatch(new ArrayList<>(lemmas), batch -> {
+            indexJdbcRepository.upsertLemmas(siteEntity.getId(), batch);
+            lemmaRepository.findBySiteIdAndLemmaIn(siteEntity, batch)
+                    .forEach(lemma -> lemmaEntityMap.put(lemma.getLemma(), lemma));
+        });
+        record("lemma", lemmas.size(), start);
+        return lemmaEntityMap;
+    }
+
+    /**
+     * Сохраняет индексные записи. Страницы и леммы записей должны быть уже сохранены
+     *
+     * @param indexes индексные записи
+     */
+    public void saveIndexes(List<IndexEntity> indexes) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (storageSettings.getIndexWriteMode() == IndexWriteMode.JPA) {
+            forEachBatch(indexes, indexRepository::saveAll);
+        } else {
+            forEachBatch(indexes, indexJdbcRepository::insertIndexes);
+        }
+        record("index_entity", indexes.size(), start);
+    }
+
+    public String summary() {
+        long elapsed = nanos.sum();
+        double rowsPerSecond = elapsed == 0 ? 0 : rows.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        return String.format("%s mode, %d rows in %d ms, %.0f rows/s",
+                storageSettings.getIndexWriteMode(), rows.sum(), TimeUnit.NANOSECONDS.toMillis(elapsed), rowsPerSecond);
+    }
+
+    private <T> void forEachBatch(List<T> entities, Consumer<List<T>> writer) {
+        int batchSize = Math.max(storageSettings.getJdbcBatchSize(), 1);
+        for (int i = 0; i < entities.size(); i += batchSize) {
+            writer.accept(entities.subList(i, Math.min(i + batchSize, entities.size())));
+        }
+    }
+
+    private void record(String table, int count, long start) {
+        long elapsed = System.nanoTime() - start;
+        rows.add(count);
+        nanos.add(elapsed);
+        log.debug("Wrote {} {} rows in {} ms", count, table, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+}
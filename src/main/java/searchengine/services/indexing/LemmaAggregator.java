@@ -0,0 +1,51 @@
+package searchengine.services.indexing;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * Параллельный подсчёт частоты лемм — количества страниц, на которых встречается лемма.
+ * <p>
+ * Каждый поток считает свою часть страниц в собственной HashMap, затем карты
+ * попарно объединяются, меньшая в большую. Общих изменяемых данных у потоков нет,
+ * поэтому результат совпадает с однопоточным подсчётом при любом числе потоков
+ */
+public final class LemmaAggregator {
+    /**
+     * Меньшие наборы страниц считаются в вызывающем потоке
+     */
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    private LemmaAggregator() {
+    }
+
+    /**
+     * Подсчитывает частоты лемм набора страниц
+     *
+     * @param pageLemmas леммы каждой страницы
+     * @return лемма и количество страниц с ней
+     */
+    public static Map<String, Integer> documentFrequencies(Collection<? extends Map<String, ?>> pageLemmas) {
+        Stream<? extends Map<String, ?>> stream = pageLemmas.size() >= PARALLEL_THRESHOLD
+                ? pageLemmas.parallelStream()
+                : pageLemmas.stream();
+        return stream.collect(Collector.of(HashMap::new,
+                LemmaAggregator::accumulate,
+                LemmaAggregator::combine,
+                Collector.Characteristics.UNORDERED));
+    }
+
+    private static void accumulate(Map<String, Integer> frequencies, Map<String, ?> lemmas) {
+        lemmas.keySet().forEach(lemma -> frequencies.merge(lemma, 1, Integer::sum));
+    }
+
+    private static Map<String, Integer> combine(Map<String, Integer> left, Map<String, Integer> right) {
+        Map<String, Integer> larger = left.size() >= right.size() ? left : right;
+        Map<String, Integer> smaller = larger == left ? right : left;
+        smaller.forEach((lemma, count) -> larger.merge(lemma, count, Integer::sum));
+        return larger;
+    }
+}
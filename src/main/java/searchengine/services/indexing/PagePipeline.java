@@ -0,0 +1,193 @@
+package searchengine.services.indexing;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.dto.entity.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Конвейер обработки страниц сайта: обход → лемматизация → сохранение.
+ * <p>
+ * Скачанные страницы передаются в ограниченную очередь, откуда их забирают
+ * потоки лемматизации. Результат лемматизации через вторую ограниченную очередь
+ * попадает в единственный поток записи, который сохраняет страницы порциями.
+ * При заполнении очередей обход сайта блокируется, поэтому в памяти одновременно
+ * находится не больше {@code capacity} страниц независимо от размера сайта.
+ * <p>
+ * Если порцию не удалось сохранить, конвейер считается неисправным: следующие
+ * страницы не сохраняются, а {@link #finish()} завершается ошибкой
+ */
+@Slf4j
+public class PagePipeline implements Consumer<Page> {
+    private static final Page END_OF_PAGES = new Page();
+    private static final ProcessedPage END_OF_PROCESSED = new ProcessedPage(null, null, Map.of(), null);
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final String name;
+    private final int lemmatizerThreads;
+    private final int batchSize;
+    private final BlockingQueue<Page> pages;
+    private final BlockingQueue<ProcessedPage> processedPages;
+    private final Function<Page, ProcessedPage> lemmatizer;
+    private final Consumer<List<ProcessedPage>> writer;
+    private final List<Thread> workers = new ArrayList<>();
+    private Thread writerThread;
+    private volatile Exception failure;
+
+    /**
+     * @param name              имя конвейера, используется в именах потоков
+     * @param capacity          ёмкость каждой из очередей
+     * @param lemmatizerThreads количество потоков лемматизации
+     * @param batchSize         максимальный размер порции для записи
+     * @param lemmatizer        стадия лемматизации, может вернуть null, чтобы пропустить страницу
+     * @param writer            стадия сохранения порции страниц
+     */
+    public PagePipeline(String name,
+                        int capacity,
+                        int lemmatizerThreads,
+                        int batchSize,
+                        Function<Page, ProcessedPage> lemmatizer,
+                        Consumer<List<ProcessedPage>> writer) {
+        this.name = name;
+        this.lemmatizerThreads = Math.max(lemmatizerThreads, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.pages = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        this.processedPages = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        this.lemmatizer = lemmatizer;
+        this.writer = writer;
+    }
+
+    public void start() {
+        for (int i = 0; i < lemmatizerThreads; i++) {
+            Thread worker = new Thread(this::lemmatize, name + "-lemmatizer-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        writerThread = new Thread(this::write, name + "-writer");
+        writerThread.start();
+    }
+
+    /**
+     * Передаёт скачанную страницу в конвейер. Блокирует вызывающий поток,
+     * пока в очереди нет свободного места
+     *
+     * @param page скачанная страница
+     */
+    @Override
+    public void accept(Page page) {
+        try {
+            pages.put(page);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Pipeline " + name + " interrupted", ex);
+        }
+    }
+
+    /**
+     * Сообщает конвейеру, что новых страниц не будет, и ожидает сохранения
+     * всех уже переданных страниц
+     */
+    public void finish() throws InterruptedException {
+        for (int i = 0; i < workers.size(); i++) {
+            pages.put(END_OF_PAGES);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        processedPages.put(END_OF_PROCESSED);
+        writerThread.join();
+        if (failure != null) {
+            throw new IllegalStateException("Pipeline " + name + " failed to save pages: " + failure.getMessage(), failure);
+        }
+        log.info("Pipeline {} finished", name);
+    }
+
+    /**
+     * Сохранение порции страниц завершилось ошибкой, обход нужно остановить
+     *
+     * @return boolean
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Прерывает все потоки конвейера без ожидания обработки оставшихся страниц
+     */
+    public void cancel() {
+        workers.forEach(Thread::interrupt);
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+        pages.clear();
+        processedPages.clear();
+    }
+
+    private void lemmatize() {
+        try {
+            Page page = pages.take();
+            while (page != END_OF_PAGES) {
+                ProcessedPage processedPage = process(page);
+                if (processedPage != null) {
+                    processedPages.put(processedPage);
+                }
+                page = pages.take();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ProcessedPage process(Page page) {
+        try {
+            return lemmatizer.apply(page);
+        } catch (Exception ex) {
+            log.error("Failed to lemmatize page {}: {}", page.getPath(), ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    private void write() {
+        List<ProcessedPage> batch = new ArrayList<>(batchSize);
+        try {
+            ProcessedPage next = processedPages.take();
+            while (next != END_OF_PROCESSED) {
+                if (next != null) {
+                    batch.add(next);
+                }
+                if (next == null || batch.size() >= batchSize) {
+                    flush(batch);
+                }
+                next = batch.isEmpty()
+                        ? processedPages.take()
+                        : processedPages.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+            flush(batch);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<ProcessedPage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (failure == null) {
+            try {
+                writer.accept(new ArrayList<>(batch));
+            } catch (Exception ex) {
+                failure = ex;
+                log.error("Failed to save batch of {} pages, pipeline {} stops saving: {}",
+                        batch.size(), name, ex.getMessage(), ex);
+            }
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,68 @@
+package searchengine.services.indexing;
+
+import java.util.Arrays;
+
+/**
+ * Компактное хранение позиций леммы на странице.
+ * <p>
+ * Позиции возрастают, поэтому хранятся разности соседних значений, каждая из
+ * которых записывается как varint: по 7 бит в байте, старший бит означает
+ * продолжение. Обычно разность меньше 128 и занимает один байт
+ */
+public final class PositionCodec {
+    private static final int PAYLOAD_BITS = 7;
+    private static final int PAYLOAD_MASK = 0x7F;
+    private static final int CONTINUATION = 0x80;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private PositionCodec() {
+    }
+
+    /**
+     * Кодирует возрастающие позиции
+     *
+     * @param positions позиции по возрастанию
+     * @return byte[]
+     */
+    public static byte[] encode(int[] positions) {
+        byte[] buffer = new byte[positions.length * MAX_VARINT_BYTES];
+        int length = 0;
+        int previous = 0;
+        for (int position : positions) {
+            int delta = position - previous;
+            previous = position;
+            while ((delta & ~PAYLOAD_MASK) != 0) {
+                buffer[length++] = (byte) ((delta & PAYLOAD_MASK) | CONTINUATION);
+                delta >>>= PAYLOAD_BITS;
+            }
+            buffer[length++] = (byte) delta;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Восстанавливает позиции, закодированные {@link #encode(int[])}
+     *
+     * @param encoded закодированные позиции
+     * @return int[]
+     */
+    public static int[] decode(byte[] encoded) {
+        int[] positions = new int[encoded.length];
+        int count = 0;
+        int previous = 0;
+        int index = 0;
+        while (index < encoded.length) {
+            int delta = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = encoded[index++];
+                delta |= (b & PAYLOAD_MASK) << shift;
+                shift += PAYLOAD_BITS;
+            } while ((b & CONTINUATION) != 0 && index < encoded.length);
+            previous += delta;
+            positions[count++] = previous;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.services.indexing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import searchengine.model.PageEntity;
+
+import java.util.Map;
+
+/**
+ * Страница, прошедшая лемматизацию и ожидающая сохранения в базу данных
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProcessedPage {
+    private final String url;
+    /**
+     * Новая версия страницы или null, если сохранённую версию нужно только удалить из индекса
+     */
+    private final PageEntity pageEntity;
+    /**
+     * Позиции лемм в тексте страницы, число позиций равно количеству вхождений леммы
+     */
+    private final Map<String, int[]> lemmas;
+    /**
+     * Идентификатор сохранённой ранее версии страницы, которую нужно заменить, или null
+     */
+    private final Integer replacedPageId;
+
+    /**
+     * Сохранённая ранее страница, новая версия которой не индексируется,
+     * например, потому что стала почти дубликатом другой страницы
+     *
+     * @param url          адрес страницы
+     * @param storedPageId идентификатор сохранённой версии страницы
+     * @return ProcessedPage
+     */
+    public static ProcessedPage removal(String url, int storedPageId) {
+        return new ProcessedPage(url, null, Map.of(), storedPageId);
+    }
+
+    public boolean isRemoval() {
+        return pageEntity == null;
+    }
+}
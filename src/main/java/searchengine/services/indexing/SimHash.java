@@ -0,0 +1,98 @@
+package searchengine.services.indexing;
+
+/**
+ * 64-битный SimHash текста: у похожих текстов отпечатки отличаются
+ * в небольшом числе бит
+ */
+public final class SimHash {
+    private static final int BITS = 64;
+    private static final int SHINGLE_SIZE = 3;
+
+    private SimHash() {
+    }
+
+    /**
+     * Вычисляет отпечаток по шинглам из трёх соседних слов. Слова шингла
+     * объединяются в порядке их следования в тексте, поэтому вставка или удаление
+     * слова меняет только шинглы, в которые оно входит
+     *
+     * @param text текст страницы
+     * @return отпечаток или 0, если в тексте нет слов
+     */
+    public static long fingerprint(String text) {
+        int[] weights = new int[BITS];
+        long first = 0;
+        long second = 0;
+        long third = 0;
+        int words = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            long wordHash = 0xcbf29ce484222325L;
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                wordHash ^= Character.toLowerCase(text.charAt(i));
+                wordHash *= 0x100000001b3L;
+                i++;
+            }
+            if (i == start) {
+                break;
+            }
+            first = second;
+            second = third;
+            third = wordHash;
+            words++;
+            if (words >= SHINGLE_SIZE) {
+                addFeature(weights, mix(first ^ Long.rotateLeft(second, 21) ^ Long.rotateLeft(third, 42)));
+            }
+        }
+        if (words > 0 && words < SHINGLE_SIZE) {
+            addFeature(weights, mix(second ^ Long.rotateLeft(third, 21)));
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Проверяет, что в тексте есть хотя бы одно слово. Отпечатки текстов
+     * без слов совпадают, поэтому сравнивать их нельзя
+     *
+     * @param text текст страницы
+     * @return boolean
+     */
+    public static boolean hasWords(CharSequence text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static void addFeature(int[] weights, long hash) {
+        for (int bit = 0; bit < BITS; bit++) {
+            weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
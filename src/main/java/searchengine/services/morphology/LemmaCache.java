@@ -0,0 +1,97 @@
+package searchengine.services.morphology;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ограниченный потокобезопасный кеш «слово → леммы».
+ * <p>
+ * Кеш разделён на сегменты со своей блокировкой, каждый сегмент вытесняет
+ * давно не использованные слова (LRU), когда его размер превышает свою долю
+ * общего ограничения. Частота слов в текстах подчиняется закону Ципфа,
+ * поэтому небольшой кеш обслуживает большую часть обращений
+ */
+public class LemmaCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize максимальное количество слов в кеше
+     */
+    public LemmaCache(int maxSize) {
+        int segmentSize = Math.max(maxSize / SEGMENTS, 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Возвращает леммы слова из кеша или вычисляет их и сохраняет в кеш.
+     * Вычисление выполняется вне блокировки сегмента
+     *
+     * @param word   слово
+     * @param loader вычисление лемм слова
+     * @return неизменяемый список лемм
+     */
+    public List<String> get(String word, Function<String, List<String>> loader) {
+        Segment segment = segments[(word.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+        List<String> lemmas;
+        synchronized (segment) {
+            lemmas = segment.get(word);
+        }
+        if (lemmas != null) {
+            hits.increment();
+            return lemmas;
+        }
+        misses.increment();
+        lemmas = List.copyOf(loader.apply(word));
+        synchronized (segment) {
+            segment.put(word, lemmas);
+        }
+        return lemmas;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public String summary() {
+        long total = getHits() + getMisses();
+        return String.format("%d words, hit ratio %.2f (%d hits, %d misses)",
+                size(), total == 0 ? 0 : (double) getHits() / total, getHits(), getMisses());
+    }
+
+    private static final class Segment extends LinkedHashMap<String, List<String>> {
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
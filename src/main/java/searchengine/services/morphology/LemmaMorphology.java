@@ -2,9 +2,39 @@ package searchengine.services.morphology;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface LemmaMorphology {
+    String NOT_READY_ERROR = "Морфологические словари загружаются, повторите запрос позже";
+
     HashMap<String, Integer> collectLemmas(String content);
 
+    Map<String, int[]> collectLemmaPositions(String content);
+
     List<String> getLemma(String lemma);
+
+    /**
+     * Словари загружены и прогреты, запросы обрабатываются без ожидания
+     *
+     * @return boolean
+     */
+    boolean isReady();
+
+    /**
+     * Текст ошибки загрузки словарей
+     *
+     * @return ошибка или null, если словари загружаются или загружены
+     */
+    String getLoadError();
+
+    /**
+     * Ответ сервисов, пока морфология не готова: ошибка загрузки словарей
+     * или сообщение о том, что словари ещё загружаются
+     *
+     * @return String
+     */
+    default String notReadyError() {
+        String loadError = getLoadError();
+        return loadError != null ? loadError : NOT_READY_ERROR;
+    }
 }
@@ -1,64 +1,211 @@
 package searchengine.services.morphology;
 
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
+import searchengine.config.MorphologySettings;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Лемматизация русских и английских слов.
+ * <p>
+ * Словари загружаются в отдельном потоке при запуске приложения, поэтому запуск
+ * не ждёт их загрузки. После загрузки выполняется необязательный прогрев на списке
+ * частых слов, и только затем морфология считается готовой. Если лемма нужна
+ * раньше, вызывающий поток дожидается загрузки словарей. Если словари загрузить
+ * не удалось, морфология остаётся неготовой, а запросы лемм завершаются ошибкой
+ * и не попадают в кеш
+ */
 @Slf4j
 @Component
 public class LemmaMorphologyImpl implements LemmaMorphology {
-    private static final String REGEX = "(?<NotCyrillic>[\\p{Punct}\\p{Co}\\p{ASCII}\\p{S}\\p{Lo}’‘№₽©◄«»—|@–…“”„ℹƒµ·ωü]+)";
-    private static RussianLuceneMorphology russianLuceneMorphology;
+    private static final int MIN_LATIN_WORD_LENGTH = 2;
+    private final MorphologySettings morphologySettings;
+    private final ResourceLoader resourceLoader;
+    private final CompletableFuture<Void> dictionaries = new CompletableFuture<>();
+    private volatile RussianLuceneMorphology russianLuceneMorphology;
+    private volatile EnglishLuceneMorphology englishLuceneMorphology;
+    private volatile boolean ready;
+    private volatile String loadError;
+    /**
+     * Кеш лемм, общий для индексации и поиска
+     */
+    @Getter
+    private final LemmaCache lemmaCache;
+
+    public LemmaMorphologyImpl(MorphologySettings morphologySettings, ResourceLoader resourceLoader) {
+        this.morphologySettings = morphologySettings;
+        this.resourceLoader = resourceLoader;
+        this.lemmaCache = new LemmaCache(morphologySettings.getLemmaCacheSize());
+    }
 
-    static {
+    @PostConstruct
+    public void start() {
+        Thread loader = new Thread(this::loadDictionaries, "morphology-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public String getLoadError() {
+        return loadError;
+    }
+
+    private void loadDictionaries() {
+        long start = System.nanoTime();
         try {
             russianLuceneMorphology = new RussianLuceneMorphology();
+            englishLuceneMorphology = new EnglishLuceneMorphology();
+            dictionaries.complete(null);
+        } catch (IOException | RuntimeException ex) {
+            loadError = "Не удалось загрузить морфологические словари: " + ex.getMessage();
+            dictionaries.completeExceptionally(ex);
+            log.error("Failed to load morphology dictionaries: {}", ex.getMessage());
+            return;
+        }
+        long loaded = System.nanoTime();
+        int words = warmUp();
+        ready = true;
+        log.info("Morphology ready: dictionaries loaded in {} ms, warm-up of {} words took {} ms",
+                TimeUnit.NANOSECONDS.toMillis(loaded - start), words,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loaded));
+    }
+
+    /**
+     * Лемматизирует слова из списка прогрева
+     *
+     * @return количество слов в списке
+     */
+    private int warmUp() {
+        String location = morphologySettings.getWarmUpWords();
+        if (location == null || location.isBlank()) {
+            return 0;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                resourceLoader.getResource(location).getInputStream(), StandardCharsets.UTF_8))) {
+            List<String> words = reader.lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(line -> line.toLowerCase(Locale.ROOT))
+                    .toList();
+            words.forEach(this::getLemma);
+            return words.size();
         } catch (IOException ex) {
-            log.error(ex.getMessage());
+            log.warn("Morphology warm-up skipped, cannot read {}: {}", location, ex.getMessage());
+            return 0;
         }
     }
 
     /**
-     * Возвращает коллекцию Map лемм и их количество
+     * Возвращает коллекцию Map лемм и их количество. Текст разбивается на
+     * русские и английские слова за один проход, каждое различное слово лемматизируется один раз
      *
      * @param content контент страницы (HTML-код)
      * @return HashMap<>
      */
     @Override
     public HashMap<String, Integer> collectLemmas(String content) {
-        content = content.toLowerCase(Locale.ROOT).replaceAll(REGEX, " ");
         HashMap<String, Integer> lemmasMap = new HashMap<>();
-        String[] lemmas = content.toLowerCase(Locale.ROOT).split("\\s+");
-        for (var l : lemmas) {
-            List<String> words = getLemma(l);
-            for (var s : words) {
-                lemmasMap.put(s, lemmasMap.getOrDefault(s, 0) + 1);
+        WordTokenizer.count(content).forEach((word, count) -> {
+            for (var lemma : getLemma(word)) {
+                lemmasMap.merge(lemma, count, Integer::sum);
             }
-        }
+        });
         return lemmasMap;
     }
 
     /**
-     * Возвращает список лемм
+     * Возвращает позиции лемм в тексте: порядковые номера слов, нормальной формой
+     * которых является лемма, по возрастанию. Позиции всех словоформ леммы объединяются
+     *
+     * @param content видимый текст страницы
+     * @return HashMap<>
+     */
+    @Override
+    public Map<String, int[]> collectLemmaPositions(String content) {
+        HashMap<String, int[]> positionsMap = new HashMap<>();
+        WordTokenizer.count(content).forEachPositions((word, positions) -> {
+            for (var lemma : getLemma(word)) {
+                positionsMap.merge(lemma, positions, LemmaMorphologyImpl::mergePositions);
+            }
+        });
+        return positionsMap;
+    }
+
+    private static int[] mergePositions(int[] left, int[] right) {
+        int[] merged = new int[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < left.length && j < right.length) {
+            merged[k++] = left[i] <= right[j] ? left[i++] : right[j++];
+        }
+        while (i < left.length) {
+            merged[k++] = left[i++];
+        }
+        while (j < right.length) {
+            merged[k++] = right[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Возвращает список лемм. Результат для каждого слова кешируется,
+     * служебным словам соответствует пустой список
      *
      * @param lemma лемма
      * @return List<>
      */
     @Override
     public List<String> getLemma(String lemma) {
+        if (lemma.isEmpty()) {
+            return List.of();
+        }
+        return lemmaCache.get(lemma, this::lookupLemma);
+    }
+
+    /**
+     * Поиск нормальных форм слова в словаре его алфавита. Если словари
+     * не загрузились, выбрасывается исключение, чтобы пустой результат не попал в кеш
+     *
+     * @param lemma лемма
+     * @return List<>
+     */
+    private List<String> lookupLemma(String lemma) {
+        awaitDictionaries();
         List<String> lemmaList = new ArrayList<>();
         try {
-            if (!lemma.isEmpty()) {
-                List<String> rusForm = russianLuceneMorphology.getNormalForms(lemma);
-                if (!isServiceWord(lemma)) {
-                    lemmaList.addAll(rusForm);
+            if (WordTokenizer.isLatin(lemma)) {
+                if (lemma.length() >= MIN_LATIN_WORD_LENGTH && !isEnglishServiceWord(lemma)) {
+                    lemmaList.addAll(englishLuceneMorphology.getNormalForms(lemma));
                 }
+                return lemmaList;
+            }
+            List<String> rusForm = russianLuceneMorphology.getNormalForms(lemma);
+            if (!isServiceWord(lemma)) {
+                lemmaList.addAll(rusForm);
             }
         } catch (Exception ex) {
             log.error("{}", ex.getMessage());
@@ -66,6 +213,14 @@ public class LemmaMorphologyImpl implements LemmaMorphology {
         return lemmaList;
     }
 
+    private void awaitDictionaries() {
+        try {
+            dictionaries.join();
+        } catch (CompletionException ex) {
+            throw new IllegalStateException(loadError, ex.getCause());
+        }
+    }
+
     /**
      * Проверка служебной части речи
      *
@@ -86,4 +241,26 @@ public class LemmaMorphologyImpl implements LemmaMorphology {
         }
         return false;
     }
+
+    /**
+     * Проверка служебной части речи английского слова: предлоги, союзы,
+     * артикли, местоимения, междометия и частицы
+     *
+     * @param lemma лемма
+     * @return boolean
+     */
+    private boolean isEnglishServiceWord(String lemma) {
+        return hasMorphTag(englishLuceneMorphology, lemma, "PREP", "CONJ", "ARTICLE", "PN", "INT", "PART");
+    }
+
+    private static boolean hasMorphTag(LuceneMorphology morphology, String lemma, String... tags) {
+        for (var s : morphology.getMorphInfo(lemma)) {
+            for (var tag : tags) {
+                if (s.contains(tag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,129 @@
+package searchengine.services.morphology;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Счётчик токенов на открытой адресации с примитивными счётчиками и позициями.
+ * <p>
+ * Токен передаётся как фрагмент буфера символов: хеш и сравнение выполняются
+ * по символам, а строка создаётся только при первом появлении токена,
+ * поэтому повторы слова не порождают ни строк, ни упакованных Integer.
+ * Для каждого токена запоминаются порядковые номера его вхождений в тексте
+ */
+class TokenCounter {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_POSITIONS = 4;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int[][] positions = new int[INITIAL_CAPACITY][];
+    private int size;
+
+    /**
+     * Учитывает вхождение токена
+     *
+     * @param chars    буфер символов
+     * @param length   длина токена в начале буфера
+     * @param position порядковый номер слова в тексте
+     */
+    void add(char[] chars, int length, int position) {
+        int hash = hash(chars, length);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && equals(keys[slot], chars, length)) {
+                addPosition(slot, position);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = new String(chars, 0, length);
+        hashes[slot] = hash;
+        positions[slot] = new int[INITIAL_POSITIONS];
+        addPosition(slot, position);
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(ObjIntConsumer<String> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Передаёт каждый токен вместе с возрастающим массивом его позиций
+     *
+     * @param consumer получатель токена и позиций
+     */
+    void forEachPositions(BiConsumer<String, int[]> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                consumer.accept(keys[i], Arrays.copyOf(positions[i], counts[i]));
+            }
+        }
+    }
+
+    private void addPosition(int slot, int position) {
+        int[] slotPositions = positions[slot];
+        if (counts[slot] == slotPositions.length) {
+            slotPositions = Arrays.copyOf(slotPositions, slotPositions.length * 2);
+            positions[slot] = slotPositions;
+        }
+        slotPositions[counts[slot]++] = position;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+        int[][] oldPositions = positions;
+        keys = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        positions = new int[oldKeys.length * 2][];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+    private static int hash(char[] chars, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String key, char[] chars, int length) {
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.services.morphology;
+
+import java.util.Arrays;
+
+/**
+ * Однопроходный токенизатор: выделяет из текста последовательности кириллических
+ * или латинских букв и сразу приводит их к нижнему регистру. Смена алфавита
+ * завершает слово, поэтому каждое слово написано одним алфавитом. Текст
+ * не копируется, регулярные выражения не используются, символы слова
+ * собираются в переиспользуемый буфер
+ */
+final class WordTokenizer {
+    private static final int INITIAL_TOKEN_LENGTH = 32;
+    private static final int NONE = 0;
+    private static final int CYRILLIC = 1;
+    private static final int LATIN = 2;
+
+    private WordTokenizer() {
+    }
+
+    /**
+     * Подсчитывает слова текста и их позиции. Позиция — порядковый номер
+     * слова в тексте, начиная с нуля
+     *
+     * @param text текст страницы или поисковый запрос
+     * @return счётчик слов в нижнем регистре
+     */
+    static TokenCounter count(CharSequence text) {
+        TokenCounter counter = new TokenCounter();
+        char[] token = new char[INITIAL_TOKEN_LENGTH];
+        int length = 0;
+        int position = 0;
+        int tokenScript = NONE;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            int script = scriptOf(c);
+            if (length > 0 && script != tokenScript) {
+                counter.add(token, length, position++);
+                length = 0;
+            }
+            if (script != NONE) {
+                if (length == token.length) {
+                    token = Arrays.copyOf(token, length * 2);
+                }
+                token[length++] = Character.toLowerCase(c);
+                tokenScript = script;
+            }
+        }
+        if (length > 0) {
+            counter.add(token, length, position);
+        }
+        return counter;
+    }
+
+    /**
+     * Проверка алфавита слова по первой букве
+     *
+     * @param word слово, полученное от токенизатора
+     * @return boolean
+     */
+    static boolean isLatin(String word) {
+        return !word.isEmpty() && scriptOf(word.charAt(0)) == LATIN;
+    }
+
+    private static int scriptOf(char c) {
+        if (c < 0x80) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ? LATIN : NONE;
+        }
+        if (c >= 'А' && c <= 'я' || c == 'ё' || c == 'Ё') {
+            return CYRILLIC;
+        }
+        return Character.isLetter(c) && Character.UnicodeScript.of(c) == Character.UnicodeScript.CYRILLIC
+                ? CYRILLIC
+                : NONE;
+    }
+}
@@ -0,0 +1,117 @@
+package searchengine.services.parsing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Document;
+import searchengine.dto.entity.Page;
+import searchengine.dto.entity.PageValidators;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Асинхронный обход сайта. Запросы выполняет HttpClient без блокировки потоков,
+ * число одновременных запросов ограничено очередью обхода. Jsoup используется
+ * только для разбора полученного HTML-кода в потоках {@code parseExecutor}
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class AsyncSiteCrawler {
+    private final CrawlContext context;
+    private final Executor parseExecutor;
+
+    /**
+     * Обходит сайт по очереди обхода и возвращает управление, когда все
+     * найденные страницы скачаны и переданы в конвейер
+     */
+    public void crawl() throws InterruptedException {
+        context.getFrontier().dispatch(context::isIndexingStopped, next -> {
+            String url = next.getUrl();
+            fetchPolitely(url, 0).whenComplete((page, ex) -> {
+                if (ex != null) {
+                    fail(url, ex);
+                    complete();
+                    return;
+                }
+                try {
+                    parseExecutor.execute(() -> handle(next, page));
+                } catch (RejectedExecutionException rejected) {
+                    complete();
+                }
+            });
+        });
+    }
+
+    /**
+     * Запрос выполняется после выдачи разрешения планировщиком,
+     * ожидание разрешения не занимает поток. Разрешение возвращается, даже если
+     * запрос не удалось отправить. После ответов 429 и 503
+     * запрос повторяется, когда планировщик снова выдаст разрешение
+     *
+     * @param url     адрес страницы
+     * @param attempt номер попытки, начиная с нуля
+     */
+    private CompletableFuture<Page> fetchPolitely(String url, int attempt) {
+        PolitenessScheduler scheduler = context.getPolitenessScheduler();
+        return scheduler.acquire(url)
+                .thenCompose(permit -> {
+                    CompletableFuture<Page> fetch;
+                    long start = System.nanoTime();
+                    try {
+                        context.getStats().recordFetch();
+                        PageValidators validators = context.getRecrawlState().visit(url);
+                        fetch = context.getPageFetcher().fetchAsync(url, validators);
+                    } catch (RuntimeException ex) {
+                        scheduler.release(url);
+                        return CompletableFuture.failedFuture(ex);
+                    }
+                    return fetch.whenComplete((page, ex) -> {
+                        if (ex != null) {
+                            scheduler.recordFailure(url, ex);
+                        } else {
+                            scheduler.recordResponse(url, page, System.nanoTime() - start);
+                        }
+                        scheduler.release(url);
+                    });
+                })
+                .thenCompose(page -> {
+                    context.getStats().recordPage(page);
+                    return scheduler.shouldRetry(page, attempt)
+                            ? fetchPolitely(url, attempt + 1)
+                            : CompletableFuture.completedFuture(page);
+                });
+    }
+
+    private void handle(FrontierUrl frontierUrl, Page page) {
+        try {
+            processPage(frontierUrl, page);
+        } catch (Exception ex) {
+            fail(frontierUrl.getUrl(), ex);
+        } finally {
+            complete();
+        }
+    }
+
+    private void processPage(FrontierUrl frontierUrl, Page page) {
+        String url = frontierUrl.getUrl();
+        log.info("Current URL: {}", url);
+        context.restoreNotModified(url, page);
+        Document document = context.acceptPage(url, page);
+        context.touchStatusTime();
+
+        for (var link : document.select("a[href]")) {
+            String currentUrl = UrlCanonicalizer.canonicalize(link.attr("abs:href"));
+            context.discover(new FrontierUrl(currentUrl, frontierUrl.getDepth() + 1));
+        }
+    }
+
+    private void fail(String url, Throwable ex) {
+        context.recordFailure(url, ex);
+        log.error("Failed to crawl {}: {}", url, ex.getMessage());
+    }
+
+    private void complete() {
+        context.getFrontier().done();
+    }
+}
@@ -0,0 +1,61 @@
+package searchengine.services.parsing;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Множество адресов на основе сегментированного ConcurrentHashMap.
+ * Поиск и добавление выполняются за O(1) и не блокируют друг друга
+ * в разных сегментах
+ */
+public class ConcurrentVisitedUrlSet implements VisitedUrlSet {
+    private static final int SHARDS = 16;
+    private static final int SHARD_MASK = SHARDS - 1;
+    /**
+     * Объект String, заголовок массива байт и узел ConcurrentHashMap со ссылкой из таблицы
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 24 + 16 + 32 + 8;
+
+    private final Set<String>[] shards;
+    private final LongAdder size = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentVisitedUrlSet() {
+        shards = new Set[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    @Override
+    public boolean add(String url) {
+        if (!shard(url).add(url)) {
+            return false;
+        }
+        size.increment();
+        chars.add(url.length());
+        return true;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        return shard(url).contains(url);
+    }
+
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return size.sum() * ENTRY_OVERHEAD_BYTES + chars.sum();
+    }
+
+    private Set<String> shard(String url) {
+        int hash = url.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & SHARD_MASK];
+    }
+}
@@ -0,0 +1,99 @@
+package searchengine.services.parsing;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.function.Consumer;
+
+/**
+ * SSLContext, сообщающий о каждом новом TLS-соединении HttpClient.
+ * <p>
+ * HttpClient создаёт SSLEngine для каждого открываемого TLS-соединения,
+ * в том числе при возобновлении TLS-сессии, и не создаёт его для запросов
+ * по уже открытому соединению. Поэтому количество созданных SSLEngine равно
+ * количеству установленных TLS-соединений. Остальные вызовы передаются
+ * стандартному контексту
+ */
+class CountingSslContext extends SSLContext {
+
+    private CountingSslContext(SSLContext delegate, Consumer<String> onConnection) {
+        super(new CountingSpi(delegate, onConnection), delegate.getProvider(), delegate.getProtocol());
+    }
+
+    /**
+     * @param onConnection получатель имени хоста каждого нового TLS-соединения
+     * @return контекст на основе стандартного SSLContext
+     */
+    static SSLContext create(Consumer<String> onConnection) {
+        try {
+            return new CountingSslContext(SSLContext.getDefault(), onConnection);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Default SSLContext is not available", ex);
+        }
+    }
+
+    private static final class CountingSpi extends SSLContextSpi {
+        private final SSLContext delegate;
+        private final Consumer<String> onConnection;
+
+        private CountingSpi(SSLContext delegate, Consumer<String> onConnection) {
+            this.delegate = delegate;
+            this.onConnection = onConnection;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom random) {
+            throw new UnsupportedOperationException("Default SSLContext is already initialized");
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            onConnection.accept(null);
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            onConnection.accept(host);
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
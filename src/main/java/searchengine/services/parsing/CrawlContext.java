@@ -0,0 +1,150 @@
+package searchengine.services.parsing;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import searchengine.dto.entity.Page;
+import searchengine.dto.entity.PageValidators;
+import searchengine.model.SiteEntity;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Состояние одного обхода сайта, общее для всех задач обхода
+ */
+@Getter
+@RequiredArgsConstructor
+public class CrawlContext {
+    public static final int HTTP_NOT_MODIFIED = 304;
+    private static final Set<String> FILE_EXTENSIONS = Set.of(
+            ".jpg", ".jpeg", ".png", ".gif", ".webp", ".pdf", ".eps",
+            ".xlsx", ".doc", ".pptx", ".docx", ".sql", ".yaml",
+            ".zip", ".7z", ".rar"
+    );
+
+    private final SiteEntity siteEntity;
+    private final Consumer<Page> pageSink;
+    private final VisitedUrlSet visitedUrls;
+    private final PolitenessScheduler politenessScheduler;
+    private final PageFetcher pageFetcher;
+    private final RecrawlState recrawlState;
+    private final CrawlJournal journal;
+    private final SiteHeartbeat heartbeat;
+    private final CrawlFrontier frontier;
+    private final RobotsTxt robotsTxt;
+    private final CrawlStats stats = new CrawlStats();
+    @Getter(AccessLevel.NONE)
+    private final BooleanSupplier stopSignal;
+
+    public boolean isIndexingStopped() {
+        return stopSignal.getAsBoolean();
+    }
+
+    /**
+     * Проверяет, что ссылка ведёт на страницу этого сайта, а не на файл или якорь
+     *
+     * @param url абсолютный адрес ссылки
+     * @return boolean
+     */
+    public boolean isSiteLink(String url) {
+        return url.contains(siteEntity.getUrl())
+                && !isFile(url)
+                && !url.contains("#")
+                && !url.contains(".html/");
+    }
+
+    /**
+     * Разбирает HTML-код страницы, сохраняет в странице заголовок и видимый текст
+     * и передаёт её в конвейер. Разобранный документ используется для поиска ссылок,
+     * поэтому HTML-код каждой страницы разбирается один раз. Относительные ссылки
+     * разрешаются от адреса, по которому получен ответ после перенаправлений
+     *
+     * @param url  адрес страницы
+     * @param page скачанная страница
+     * @return разобранный документ
+     */
+    public Document acceptPage(String url, Page page) {
+        Document document = Jsoup.parse(page.getContent(), page.getFinalUrl() != null ? page.getFinalUrl() : url);
+        page.setTitle(document.title());
+        page.setText(document.text());
+        pageSink.accept(page);
+        return document;
+    }
+
+    /**
+     * Ответ 304 не содержит тела, поэтому для поиска ссылок подставляется
+     * сохранённый ранее HTML-код страницы
+     *
+     * @param url  адрес страницы
+     * @param page скачанная страница
+     * @return Page
+     */
+    public Page restoreNotModified(String url, Page page) {
+        PageValidators validators = recrawlState.find(url);
+        if (page.getStatusCode() == HTTP_NOT_MODIFIED && validators != null) {
+            String content = recrawlState.storedContent(validators);
+            page.setContent(content == null ? "" : content);
+        }
+        return page;
+    }
+
+    /**
+     * Ставит найденный адрес в очередь обхода, если это страница сайта,
+     * она разрешена robots.txt, укладывается в бюджет сайта и найдена впервые.
+     * Адрес добавляется в множество посещённых и записывается в журнал
+     *
+     * @param frontierUrl адрес страницы с глубиной от главной
+     * @return true, если адрес поставлен в очередь
+     */
+    public boolean discover(FrontierUrl frontierUrl) {
+        String url = frontierUrl.getUrl();
+        if (!isSiteLink(url)
+                || !frontier.isWithinDepth(frontierUrl.getDepth())
+                || !robotsTxt.isAllowed(pathOf(url))
+                || !visitedUrls.add(UrlCanonicalizer.dedupeKey(url))
+                || !frontier.reserve()) {
+            return false;
+        }
+        journal.queued(url, frontierUrl.getDepth());
+        frontier.add(frontierUrl);
+        return true;
+    }
+
+    /**
+     * Отмечает обработку страницы. Время статуса сайта записывается
+     * в базу данных фоновым {@link SiteHeartbeat}
+     */
+    public void touchStatusTime() {
+        heartbeat.touch(siteEntity.getId());
+    }
+
+    /**
+     * Учитывает ошибку обработки страницы в счётчиках обхода.
+     * База данных из задач обхода не изменяется
+     *
+     * @param url       адрес страницы
+     * @param exception ошибка
+     */
+    public void recordFailure(String url, Throwable exception) {
+        stats.recordFailure(url, exception);
+    }
+
+    private static String pathOf(String url) {
+        try {
+            URI uri = URI.create(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+        } catch (IllegalArgumentException ex) {
+            return url;
+        }
+    }
+
+    private boolean isFile(String link) {
+        return FILE_EXTENSIONS.stream().anyMatch(link.toLowerCase()::endsWith) || link.contains("?_ga");
+    }
+}
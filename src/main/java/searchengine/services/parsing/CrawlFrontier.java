@@ -0,0 +1,111 @@
+package searchengine.services.parsing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Очередь обхода сайта с приоритетом по глубине и дате изменения страницы.
+ * <p>
+ * Сайт обходится в ширину: задачи обхода не порождают подзадачи, а добавляют
+ * найденные адреса в очередь, из которой их выбирает {@link #dispatch}.
+ * Очередь ограничивает количество страниц и глубину обхода сайта
+ */
+@Slf4j
+public class CrawlFrontier {
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private final PriorityBlockingQueue<FrontierUrl> queue = new PriorityBlockingQueue<>(64, FrontierUrl.PRIORITY);
+    /**
+     * Адреса в очереди и адреса в процессе обработки
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final int maxInFlight;
+    private final int maxPages;
+    private final int maxDepth;
+    private final Semaphore inFlight;
+
+    /**
+     * @param maxInFlight максимальное количество одновременно обрабатываемых адресов
+     * @param maxPages    максимальное количество страниц сайта, 0 — без ограничения
+     * @param maxDepth    максимальная глубина от главной страницы, 0 — без ограничения
+     */
+    public CrawlFrontier(int maxInFlight, int maxPages, int maxDepth) {
+        this.maxInFlight = Math.max(maxInFlight, 1);
+        this.maxPages = maxPages;
+        this.maxDepth = maxDepth;
+        this.inFlight = new Semaphore(this.maxInFlight);
+    }
+
+    public boolean isWithinDepth(int depth) {
+        return maxDepth <= 0 || depth <= maxDepth;
+    }
+
+    /**
+     * Резервирует место для новой страницы в бюджете сайта
+     *
+     * @return false, если бюджет страниц исчерпан
+     */
+    public boolean reserve() {
+        return maxPages <= 0 || admitted.incrementAndGet() <= maxPages;
+    }
+
+    /**
+     * Добавляет адрес в очередь без проверки бюджета
+     *
+     * @param frontierUrl адрес страницы
+     */
+    public void add(FrontierUrl frontierUrl) {
+        pending.incrementAndGet();
+        queue.add(frontierUrl);
+    }
+
+    /**
+     * Передаёт адреса из очереди обработчику, пока очередь не опустеет и все
+     * адреса не будут обработаны. Обработчик должен вызвать {@link #done()}
+     * для каждого адреса, в том числе при ошибке
+     *
+     * @param stopSignal признак остановки индексации
+     * @param worker     обработчик адреса
+     */
+    public void dispatch(BooleanSupplier stopSignal, Consumer<FrontierUrl> worker) throws InterruptedException {
+        while (pending.get() > 0 && !stopSignal.getAsBoolean()) {
+            if (!inFlight.tryAcquire(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+            FrontierUrl next = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                inFlight.release();
+                continue;
+            }
+            try {
+                worker.accept(next);
+            } catch (RejectedExecutionException ex) {
+                done();
+            }
+        }
+        if (pending.get() > 0 && !inFlight.tryAcquire(maxInFlight, STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Crawl stopped with {} pages still in progress", maxInFlight - inFlight.availablePermits());
+        }
+    }
+
+    /**
+     * Отмечает завершение обработки адреса
+     */
+    public void done() {
+        inFlight.release();
+        pending.decrementAndGet();
+    }
+
+    public boolean isBudgetExhausted() {
+        return maxPages > 0 && admitted.get() > maxPages;
+    }
+}
@@ -0,0 +1,182 @@
+package searchengine.services.parsing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал обхода сайта для возобновления после остановки или перезапуска.
+ * <p>
+ * Файл только дописывается: запись {@code Q} — адрес найден и поставлен
+ * в очередь, запись {@code D} — страница обработана. Записи накапливаются
+ * в очереди и сбрасываются на диск порциями отдельным потоком, поэтому
+ * журнал не замедляет обход
+ */
+@Slf4j
+public class CrawlJournal implements Closeable {
+    private static final String QUEUED = "Q";
+    private static final String DONE = "D";
+    private static final String SEPARATOR = "\t";
+    private static final String END_OF_RECORDS = "";
+    private static final int MAX_BATCH = 1000;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final Path file;
+    private final BlockingQueue<String> records = new LinkedBlockingQueue<>();
+    private Thread writerThread;
+
+    private CrawlJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param directory каталог журналов
+     * @param siteUrl   адрес сайта
+     * @return журнал сайта, файл при этом не создаётся
+     */
+    public static CrawlJournal forSite(Path directory, String siteUrl) {
+        String host = URI.create(siteUrl).getHost();
+        String name = (host == null ? siteUrl : host).replaceAll("[^a-zA-Z0-9.-]", "_");
+        return new CrawlJournal(directory.resolve(name + ".journal"));
+    }
+
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    /**
+     * Восстанавливает состояние обхода: все найденные адреса добавляются
+     * в множество посещённых, а необработанные возвращаются для повторной постановки в очередь
+     *
+     * @param visitedUrls множество посещённых адресов
+     * @return необработанные адреса в порядке их обнаружения
+     */
+    public List<FrontierUrl> replay(VisitedUrlSet visitedUrls) throws IOException {
+        Map<String, Integer> queued = new LinkedHashMap<>();
+        Set<String> done = new HashSet<>();
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                String[] parts = line.split(SEPARATOR, 3);
+                if (parts.length == 3 && parts[0].equals(QUEUED)) {
+                    queued.putIfAbsent(parts[2], parseDepth(parts[1]));
+                } else if (parts.length == 2 && parts[0].equals(DONE)) {
+                    done.add(parts[1]);
+                }
+            });
+        }
+        List<FrontierUrl> pending = new ArrayList<>();
+        queued.forEach((url, depth) -> {
+            visitedUrls.add(UrlCanonicalizer.dedupeKey(url));
+            if (!done.contains(url)) {
+                pending.add(new FrontierUrl(url, depth));
+            }
+        });
+        log.info("Journal {} replayed: {} URLs found, {} pending", file, queued.size(), pending.size());
+        return pending;
+    }
+
+    /**
+     * Запускает поток записи
+     *
+     * @param append дописывать существующий журнал, иначе начать новый
+     */
+    public void start(boolean append) throws IOException {
+        Files.createDirectories(file.getParent());
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        writerThread = new Thread(() -> write(writer), "journal-" + file.getFileName());
+        writerThread.start();
+    }
+
+    public void queued(String url, int depth) {
+        records.add(QUEUED + SEPARATOR + depth + SEPARATOR + url);
+    }
+
+    public void done(String url) {
+        records.add(DONE + SEPARATOR + url);
+    }
+
+    /**
+     * Дописывает оставшиеся записи и останавливает поток записи
+     */
+    @Override
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        records.add(END_OF_RECORDS);
+        try {
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+
+    /**
+     * Удаляет журнал завершённого обхода
+     */
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.error("Failed to delete journal {}: {}", file, ex.getMessage());
+        }
+    }
+
+    private void write(BufferedWriter writer) {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        boolean finished = false;
+        try (writer) {
+            while (!finished) {
+                String record = records.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    continue;
+                }
+                batch.add(record);
+                records.drainTo(batch, MAX_BATCH - 1);
+                for (String line : batch) {
+                    if (line.isEmpty()) {
+                        finished = true;
+                        break;
+                    }
+                    writer.write(line);
+                    writer.newLine();
+                }
+                writer.flush();
+                batch.clear();
+            }
+        } catch (IOException ex) {
+            log.error("Failed to write journal {}: {}", file, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int parseDepth(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
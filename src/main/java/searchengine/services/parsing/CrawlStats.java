@@ -0,0 +1,80 @@
+package searchengine.services.parsing;
+
+import searchengine.dto.entity.Page;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики одного обхода сайта
+ */
+public class CrawlStats {
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder skippedResources = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile String lastError;
+
+    public void recordFetch() {
+        fetches.increment();
+    }
+
+    /**
+     * Учитывает ответы, тело которых не скачивалось полностью
+     *
+     * @param page скачанная страница
+     */
+    public void recordPage(Page page) {
+        if (!page.isHtml()) {
+            skippedResources.increment();
+        }
+        bytesSaved.add(page.getSkippedBytes());
+    }
+
+    /**
+     * Учитывает страницу, которую не удалось обработать. В базу данных ошибка
+     * записывается один раз, по завершении обхода
+     *
+     * @param url       адрес страницы
+     * @param exception ошибка
+     */
+    public void recordFailure(String url, Throwable exception) {
+        failures.increment();
+        lastError = url + ": " + exception.getMessage();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Текст последней ошибки обработки страницы
+     *
+     * @return ошибка или null, если ошибок не было
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    public long getSkippedResources() {
+        return skippedResources.sum();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public long getFetches() {
+        return fetches.sum();
+    }
+
+    /**
+     * Количество запросов на один уникальный адрес. При корректной
+     * работе обхода значение равно 1.0
+     *
+     * @param uniqueUrls количество уникальных адресов
+     * @return double
+     */
+    public double fetchesPerUniqueUrl(int uniqueUrls) {
+        return uniqueUrls == 0 ? 0 : (double) getFetches() / uniqueUrls;
+    }
+}
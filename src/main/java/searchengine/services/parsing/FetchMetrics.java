@@ -0,0 +1,114 @@
+package searchengine.services.parsing;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики HTTP-клиента обходчика: доля HTTP/2, повторное использование
+ * соединений и время установки соединения.
+ * <p>
+ * Новые TLS-соединения считаются напрямую: {@link CountingSslContext} сообщает
+ * о каждом SSLEngine, который HttpClient создаёт при открытии соединения, включая
+ * соединения с возобновлённой TLS-сессией. Для незашифрованных запросов HttpClient
+ * не даёт способа узнать об открытии соединения, поэтому они только подсчитываются,
+ * а доля повторного использования и время установки относятся к HTTPS-запросам.
+ * <p>
+ * Время установки соединения оценивается как разница среднего времени до заголовков
+ * ответа на новых и на повторно использованных соединениях. Новое соединение хоста
+ * приписывается первому ответу этого хоста после его открытия, поэтому при
+ * параллельных запросах к одному хосту оценка приблизительная
+ */
+public class FetchMetrics {
+    private static final String UNKNOWN_HOST = "";
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder plainRequests = new LongAdder();
+    private final LongAdder http2Requests = new LongAdder();
+    private final LongAdder tlsConnections = new LongAdder();
+    private final LongAdder newConnectionRequests = new LongAdder();
+    private final LongAdder reusedConnectionRequests = new LongAdder();
+    private final LongAdder newConnectionNanos = new LongAdder();
+    private final LongAdder reusedConnectionNanos = new LongAdder();
+    /**
+     * Открытые соединения хостов, которые ещё не приписаны ни одному ответу
+     */
+    private final Map<String, AtomicInteger> unclaimedConnections = new ConcurrentHashMap<>();
+
+    /**
+     * Учитывает новое TLS-соединение
+     *
+     * @param host имя хоста или null, если оно неизвестно
+     */
+    public void recordTlsConnection(String host) {
+        tlsConnections.increment();
+        unclaimedConnections.computeIfAbsent(host == null ? UNKNOWN_HOST : host, key -> new AtomicInteger())
+                .incrementAndGet();
+    }
+
+    /**
+     * Учитывает полученный ответ
+     *
+     * @param response     ответ сервера
+     * @param elapsedNanos время от отправки запроса до получения заголовков ответа
+     */
+    public void record(HttpResponse<?> response, long elapsedNanos) {
+        requests.increment();
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            http2Requests.increment();
+        }
+        if (!"https".equalsIgnoreCase(response.uri().getScheme())) {
+            plainRequests.increment();
+            return;
+        }
+        if (claimConnection(response.uri().getHost()) || claimConnection(UNKNOWN_HOST)) {
+            newConnectionRequests.increment();
+            newConnectionNanos.add(elapsedNanos);
+        } else {
+            reusedConnectionRequests.increment();
+            reusedConnectionNanos.add(elapsedNanos);
+        }
+    }
+
+    /**
+     * Доля HTTPS-запросов, выполненных без открытия нового TLS-соединения
+     *
+     * @return double
+     */
+    public double connectionReuseRatio() {
+        long tlsRequests = requests.sum() - plainRequests.sum();
+        return tlsRequests == 0 ? 0 : Math.max(tlsRequests - tlsConnections.sum(), 0) / (double) tlsRequests;
+    }
+
+    /**
+     * Оценка среднего времени установки TCP- и TLS-соединения, мс
+     *
+     * @return double
+     */
+    public double estimatedHandshakeMillis() {
+        double setup = averageMillis(newConnectionNanos, newConnectionRequests)
+                - averageMillis(reusedConnectionNanos, reusedConnectionRequests);
+        return Math.max(setup, 0);
+    }
+
+    public String summary() {
+        return String.format("%d requests (%d plain HTTP), %d over HTTP/2, %d TLS connections opened, "
+                        + "TLS reuse ratio %.2f, handshake ~%.1f ms",
+                requests.sum(), plainRequests.sum(), http2Requests.sum(), tlsConnections.sum(),
+                connectionReuseRatio(), estimatedHandshakeMillis());
+    }
+
+    private boolean claimConnection(String host) {
+        AtomicInteger unclaimed = host == null ? null : unclaimedConnections.get(host);
+        return unclaimed != null && unclaimed.getAndUpdate(count -> Math.max(count - 1, 0)) > 0;
+    }
+
+    private static double averageMillis(LongAdder nanos, LongAdder count) {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) nanos.sum() / total / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
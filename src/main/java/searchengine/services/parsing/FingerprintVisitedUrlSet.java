@@ -0,0 +1,127 @@
+package searchengine.services.parsing;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Компактное множество адресов для очень больших сайтов: вместо строк хранит
+ * их 64-битные отпечатки в сегментированных хеш-таблицах с открытой адресацией
+ * (около 16 байт на адрес). Вероятность ложного совпадения для 10 млн адресов
+ * не превышает 10^-5
+ */
+public class FingerprintVisitedUrlSet implements VisitedUrlSet {
+    private static final int SHARDS = 64;
+    private static final int SHARD_MASK = SHARDS - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = 0L;
+
+    private final Shard[] shards = new Shard[SHARDS];
+    private final LongAdder size = new LongAdder();
+
+    public FingerprintVisitedUrlSet() {
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @Override
+    public boolean add(String url) {
+        long fingerprint = fingerprint(url);
+        if (!shard(fingerprint).add(fingerprint)) {
+            return false;
+        }
+        size.increment();
+        return true;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = fingerprint(url);
+        return shard(fingerprint).contains(fingerprint);
+    }
+
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            bytes += shard.capacity() * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private Shard shard(long fingerprint) {
+        return shards[(int) (fingerprint >>> 58) & SHARD_MASK];
+    }
+
+    /**
+     * 64-битный FNV-1a с финальным перемешиванием битов
+     */
+    private static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    private static final class Shard {
+        private long[] table = new long[INITIAL_CAPACITY];
+        private int count;
+
+        synchronized boolean add(long fingerprint) {
+            if (count * 2 >= table.length) {
+                resize();
+            }
+            if (!insert(table, fingerprint)) {
+                return false;
+            }
+            count++;
+            return true;
+        }
+
+        synchronized boolean contains(long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = (int) fingerprint & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+                if (table[i] == fingerprint) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int capacity() {
+            return table.length;
+        }
+
+        private void resize() {
+            long[] resized = new long[table.length * 2];
+            for (long fingerprint : table) {
+                if (fingerprint != EMPTY) {
+                    insert(resized, fingerprint);
+                }
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int i = (int) fingerprint & mask;
+            while (table[i] != EMPTY) {
+                if (table[i] == fingerprint) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = fingerprint;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package searchengine.services.parsing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+/**
+ * Адрес в очереди обхода вместе с глубиной от главной страницы
+ * и датой изменения из sitemap.xml, если она известна
+ */
+@Getter
+@RequiredArgsConstructor
+public class FrontierUrl {
+    /**
+     * Сначала обходятся менее глубокие страницы, среди них — недавно изменённые
+     */
+    public static final Comparator<FrontierUrl> PRIORITY = Comparator
+            .comparingInt(FrontierUrl::getDepth)
+            .thenComparing(FrontierUrl::getLastModified, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final String url;
+    private final int depth;
+    private final Instant lastModified;
+
+    public FrontierUrl(String url, int depth) {
+        this(url, depth, null);
+    }
+}
@@ -0,0 +1,249 @@
+package searchengine.services.parsing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Обработчик тела ответа, который читает только HTML-страницы.
+ * <p>
+ * Тип содержимого проверяется по заголовкам до чтения тела: если это не HTML,
+ * подписка на тело сразу отменяется и соединение закрывается без загрузки.
+ * Для служебных файлов (robots.txt, sitemap.xml) проверку можно отключить.
+ * Тело HTML-страницы читается потоково и обрезается по достижении {@code maxBodyBytes},
+ * сжатое тело (gzip, deflate) распаковывается, размер распакованного тела ограничен тем же значением.
+ * Кодировка берётся из Content-Type, а если она там не указана — из метки порядка байтов
+ * или {@code <meta charset>} документа
+ */
+@Slf4j
+@RequiredArgsConstructor
+class HtmlBodyHandler implements HttpResponse.BodyHandler<HtmlBodyHandler.Body> {
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final List<String> HTML_TYPES = List.of("text/html", "application/xhtml+xml");
+    /**
+     * Размер начала документа, в котором ищется {@code <meta charset>}
+     */
+    private static final int CHARSET_SNIFF_BYTES = 4096;
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?\\s*([a-zA-Z0-9_.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private final long maxBodyBytes;
+    /**
+     * Время отправки запроса, по нему считается время до получения заголовков ответа
+     */
+    private final long startNanos;
+    /**
+     * Читать только HTML-страницы
+     */
+    private final boolean htmlOnly;
+
+    @Override
+    public HttpResponse.BodySubscriber<Body> apply(HttpResponse.ResponseInfo responseInfo) {
+        long headersNanos = System.nanoTime() - startNanos;
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse("");
+        String contentEncoding = responseInfo.headers().firstValue("Content-Encoding").orElse("");
+        long contentLength = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1);
+        boolean html = isHtml(contentType);
+        return new LimitedBodySubscriber(html, htmlOnly && !html, charsetOf(contentType),
+                contentEncoding.trim().toLowerCase(Locale.ROOT), contentLength, maxBodyBytes, headersNanos);
+    }
+
+    /**
+     * Ответ без заголовка Content-Type (например, 304) считается HTML-страницей
+     */
+    private static boolean isHtml(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.isBlank() || HTML_TYPES.stream().anyMatch(type::startsWith);
+    }
+
+    /**
+     * Кодировка из заголовка Content-Type
+     *
+     * @return кодировка или null, если она не указана или неизвестна
+     */
+    private static Charset charsetOf(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].equalsIgnoreCase("charset")) {
+                return charsetForName(pair[1].replace("\"", "").trim());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Определяет кодировку документа, для которого она не указана в заголовках:
+     * по метке порядка байтов, затем по {@code <meta charset>} или
+     * {@code <meta http-equiv="Content-Type">} в начале документа, иначе UTF-8
+     *
+     * @param bytes тело документа
+     * @return Charset
+     */
+    static Charset sniffCharset(byte[] bytes) {
+        if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        String head = new String(bytes, 0, Math.min(bytes.length, CHARSET_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+        Matcher matcher = META_CHARSET.matcher(head);
+        if (matcher.find()) {
+            Charset charset = charsetForName(matcher.group(1));
+            if (charset != null) {
+                return charset;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Charset charsetForName(String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Прочитанное тело ответа
+     */
+    @Getter
+    @RequiredArgsConstructor
+    static class Body {
+        private final String content;
+        private final boolean html;
+        private final boolean truncated;
+        /**
+         * Количество байт, которые не пришлось скачивать, если длина ответа известна
+         */
+        private final long skippedBytes;
+        private final long headersNanos;
+    }
+
+    private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<Body> {
+        private final CompletableFuture<Body> result = new CompletableFuture<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final boolean html;
+        private final boolean skip;
+        /**
+         * Кодировка из заголовков или null, если её нужно определить по содержимому
+         */
+        private final Charset charset;
+        private final String contentEncoding;
+        private final long contentLength;
+        private final long limit;
+        private final long headersNanos;
+        private Flow.Subscription subscription;
+
+        LimitedBodySubscriber(boolean html,
+                              boolean skip,
+                              Charset charset,
+                              String contentEncoding,
+                              long contentLength,
+                              long limit,
+                              long headersNanos) {
+            this.html = html;
+            this.skip = skip;
+            this.charset = charset;
+            this.contentEncoding = contentEncoding;
+            this.contentLength = contentLength;
+            this.limit = Math.max(limit, 0);
+            this.headersNanos = headersNanos;
+        }
+
+        @Override
+        public CompletionStage<Body> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (skip) {
+                subscription.cancel();
+                result.complete(new Body("", false, false, Math.max(contentLength, 0), headersNanos));
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                int length = (int) Math.min(item.remaining(), limit - buffer.size());
+                byte[] bytes = new byte[length];
+                item.get(bytes);
+                buffer.write(bytes, 0, length);
+                if (item.hasRemaining()) {
+                    subscription.cancel();
+                    long skipped = contentLength > limit ? contentLength - limit : 0;
+                    result.complete(new Body(decode(), html, true, skipped, headersNanos));
+                    return;
+                }
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(new Body(decode(), html, false, 0, headersNanos));
+        }
+
+        private String decode() {
+            byte[] bytes = contentEncoding.equals("gzip") || contentEncoding.equals("deflate")
+                    ? inflate(buffer.toByteArray())
+                    : buffer.toByteArray();
+            return new String(bytes, charset != null ? charset : sniffCharset(bytes));
+        }
+
+        /**
+         * Распаковывает тело не больше чем до {@code limit} байт. Если тело было
+         * обрезано при чтении, возвращается успешно распакованная часть
+         */
+        private byte[] inflate(byte[] compressed) {
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            try (InputStream in = contentEncoding.equals("gzip")
+                    ? new GZIPInputStream(new ByteArrayInputStream(compressed))
+                    : new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+                int read;
+                while (inflated.size() < limit && (read = in.read(chunk)) != -1) {
+                    inflated.write(chunk, 0, (int) Math.min(read, limit - inflated.size()));
+                }
+            } catch (IOException ex) {
+                log.debug("Compressed body ended unexpectedly: {}", ex.getMessage());
+            }
+            return inflated.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package searchengine.services.parsing;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.entity.Page;
+import searchengine.dto.entity.PageValidators;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронная загрузка страниц через общий HttpClient.
+ * <p>
+ * Клиент один на всё приложение: он держит пул keep-alive соединений по хостам
+ * и использует HTTP/2 с мультиплексированием запросов, если сервер его поддерживает,
+ * иначе HTTP/1.1. Ответы запрашиваются в сжатом виде (gzip, deflate).
+ * Тела ответов, которые не являются HTML, не скачиваются
+ */
+@Slf4j
+@Component
+public class PageFetcher {
+    public static final String USER_AGENT = "Mozilla/5.0 (compatible; YandexBot/3.0; +http://yandex.com/bots)";
+    public static final String REFERRER = "https://www.yandex.ru";
+
+    private final CrawlerSettings crawlerSettings;
+    private final HttpClient httpClient;
+    @Getter
+    private final FetchMetrics metrics = new FetchMetrics();
+
+    public PageFetcher(CrawlerSettings crawlerSettings) {
+        this.crawlerSettings = crawlerSettings;
+        this.httpClient = HttpClient.newBuilder()
+                .version(crawlerSettings.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(crawlerSettings.getConnectTimeoutMs()))
+                .sslContext(CountingSslContext.create(metrics::recordTlsConnection))
+                .build();
+    }
+
+    /**
+     * Отправляет запрос, не блокируя вызывающий поток
+     *
+     * @param url        адрес страницы
+     * @param validators сведения о сохранённой странице для условного запроса или null
+     * @return страница с кодом ответа и HTML-кодом
+     */
+    public CompletableFuture<Page> fetchAsync(String url, PageValidators validators) {
+        HttpRequest request;
+        try {
+            request = buildRequest(url, validators);
+        } catch (IllegalArgumentException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return httpClient.sendAsync(request, bodyHandler())
+                .thenApply(response -> toPage(url, response));
+    }
+
+    public Page fetch(String url) throws IOException, InterruptedException {
+        return fetch(url, null);
+    }
+
+    /**
+     * Выполняет запрос в вызывающем потоке
+     *
+     * @param url        адрес страницы
+     * @param validators сведения о сохранённой странице для условного запроса или null
+     * @return страница с кодом ответа и HTML-кодом
+     */
+    public Page fetch(String url, PageValidators validators) throws IOException, InterruptedException {
+        HttpRequest request;
+        try {
+            request = buildRequest(url, validators);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid URL: " + url, ex);
+        }
+        return toPage(url, httpClient.send(request, bodyHandler()));
+    }
+
+    /**
+     * Скачивает служебный файл сайта (robots.txt, sitemap.xml) любого типа содержимого
+     *
+     * @param url адрес файла
+     * @return файл с кодом ответа и содержимым
+     */
+    public Page fetchText(String url) throws IOException, InterruptedException {
+        HttpRequest request;
+        try {
+            request = buildRequest(url, null);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid URL: " + url, ex);
+        }
+        HtmlBodyHandler handler = new HtmlBodyHandler(crawlerSettings.getMaxBodyBytes(), System.nanoTime(), false);
+        return toPage(url, httpClient.send(request, handler));
+    }
+
+    private HttpRequest buildRequest(String url, PageValidators validators) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(crawlerSettings.getRequestTimeoutMs()))
+                .header("User-Agent", USER_AGENT)
+                .header("Referer", REFERRER)
+                .header("Accept-Encoding", HtmlBodyHandler.ACCEPT_ENCODING)
+                .GET();
+        if (validators != null && validators.getEtag() != null) {
+            builder.header("If-None-Match", validators.getEtag());
+        }
+        if (validators != null && validators.getLastModified() != null) {
+            builder.header("If-Modified-Since", validators.getLastModified());
+        }
+        return builder.build();
+    }
+
+    private HtmlBodyHandler bodyHandler() {
+        return new HtmlBodyHandler(crawlerSettings.getMaxBodyBytes(), System.nanoTime(), true);
+    }
+
+    private Page toPage(String url, HttpResponse<HtmlBodyHandler.Body> response) {
+        HtmlBodyHandler.Body body = response.body();
+        metrics.record(response, body.getHeadersNanos());
+        if (!body.isHtml()) {
+            log.debug("Non-HTML response: {}", url);
+        } else if (body.isTruncated()) {
+            log.warn("Page {} exceeds {} bytes and was truncated", url, crawlerSettings.getMaxBodyBytes());
+        }
+        Page page = new Page();
+        page.setPath(url);
+        page.setFinalUrl(response.uri().toString());
+        page.setContent(body.getContent());
+        page.setHtml(body.isHtml());
+        page.setSkippedBytes(body.getSkippedBytes());
+        page.setStatusCode(response.statusCode());
+        page.setEtag(response.headers().firstValue("ETag").orElse(null));
+        page.setLastModified(response.headers().firstValue("Last-Modified").orElse(null));
+        page.setRetryAfterMillis(response.headers().firstValue("Retry-After")
+                .map(PageFetcher::retryAfterMillis)
+                .orElse(0L));
+        return page;
+    }
+
+    /**
+     * Заголовок Retry-After содержит либо число секунд, либо дату в формате HTTP
+     *
+     * @param value значение заголовка
+     * @return пауза в миллисекундах или 0, если значение не распознано
+     */
+    private static long retryAfterMillis(String value) {
+        String trimmed = value.trim();
+        try {
+            if (trimmed.chars().allMatch(Character::isDigit)) {
+                return Duration.ofSeconds(Long.parseLong(trimmed)).toMillis();
+            }
+            ZonedDateTime retryAt = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(Duration.between(ZonedDateTime.now(), retryAt).toMillis(), 0);
+        } catch (NumberFormatException | ArithmeticException | DateTimeParseException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package searchengine.services.parsing;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.entity.Page;
+
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Планировщик вежливого обхода: ограничивает частоту запросов (token bucket)
+ * и число одновременных запросов к каждому хосту.
+ * <p>
+ * Разрешение выдаётся как CompletableFuture, поэтому ожидание не занимает
+ * поток: если токенов нет, завершение ожидающих откладывается на время
+ * пополнения корзины. Корзины разных хостов независимы друг от друга.
+ * <p>
+ * Число одновременных запросов подбирается по алгоритму AIMD: пока сервер
+ * отвечает быстрее {@code targetLatencyMs}, предел растёт на единицу за каждое
+ * «окно» запросов до {@code maxConcurrencyPerHost}; при медленных ответах
+ * он плавно снижается, а при ответах 429, 503 и таймаутах уменьшается вдвое,
+ * и запросы к хосту приостанавливаются на время из заголовка Retry-After
+ * или на экспоненциально растущую паузу
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PolitenessScheduler {
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+    public static final int HTTP_SERVICE_UNAVAILABLE = 503;
+    private static final double MIN_CONCURRENCY = 1;
+    private static final double SLOW_RESPONSE_FACTOR = 0.9;
+    private static final double BACKOFF_FACTOR = 0.5;
+    private static final long BASE_PAUSE_MS = 1000;
+    private static final long MAX_PAUSE_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final CrawlerSettings crawlerSettings;
+    private final Map<String, HostBucket> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "politeness-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Ответ, означающий перегрузку сервера. Такие страницы не сохраняются
+     *
+     * @param statusCode код ответа
+     * @return boolean
+     */
+    public static boolean isThrottled(int statusCode) {
+        return statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HTTP_SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Запрашивает разрешение на запрос к хосту страницы. После выполнения
+     * запроса разрешение нужно вернуть через {@link #release(String)}
+     *
+     * @param url адрес страницы
+     * @return future, который завершается при выдаче разрешения
+     */
+    public CompletableFuture<Void> acquire(String url) {
+        return bucket(url).acquire();
+    }
+
+    public void release(String url) {
+        bucket(url).release();
+    }
+
+    /**
+     * Ограничивает частоту запросов к хосту значением Crawl-delay из robots.txt
+     *
+     * @param url              адрес страницы хоста
+     * @param crawlDelayMillis минимальный интервал между запросами, мс
+     */
+    public void applyCrawlDelay(String url, long crawlDelayMillis) {
+        if (crawlDelayMillis > 0) {
+            bucket(url).limitRate(1000.0 / crawlDelayMillis);
+        }
+    }
+
+    /**
+     * Учитывает ответ сервера при подборе числа одновременных запросов
+     *
+     * @param url          адрес страницы
+     * @param page         скачанная страница
+     * @param latencyNanos время выполнения запроса
+     */
+    public void recordResponse(String url, Page page, long latencyNanos) {
+        bucket(url).onResponse(page.getStatusCode(), page.getRetryAfterMillis(), latencyNanos);
+    }
+
+    /**
+     * Учитывает неудачный запрос: таймаут считается признаком перегрузки сервера
+     *
+     * @param url       адрес страницы
+     * @param exception причина ошибки
+     */
+    public void recordFailure(String url, Throwable exception) {
+        Throwable cause = exception instanceof CompletionException && exception.getCause() != null
+                ? exception.getCause()
+                : exception;
+        if (cause instanceof HttpTimeoutException) {
+            bucket(url).backOff("timeout", 0);
+        }
+    }
+
+    /**
+     * Проверяет, нужно ли повторить запрос после ответа 429 или 503.
+     * Повторный запрос получит разрешение только после паузы
+     *
+     * @param page    скачанная страница
+     * @param attempt номер выполненной попытки, начиная с нуля
+     * @return boolean
+     */
+    public boolean shouldRetry(Page page, int attempt) {
+        return isThrottled(page.getStatusCode()) && attempt < crawlerSettings.getMaxRetries();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private HostBucket bucket(String url) {
+        return buckets.computeIfAbsent(hostOf(url), host -> new HostBucket(host,
+                crawlerSettings.getRequestsPerSecond(),
+                crawlerSettings.getMaxConcurrencyPerHost(),
+                TimeUnit.MILLISECONDS.toNanos(crawlerSettings.getTargetLatencyMs())));
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host.toLowerCase();
+        } catch (IllegalArgumentException ex) {
+            return url;
+        }
+    }
+
+    private final class HostBucket {
+        private final String host;
+        private final int maxConcurrency;
+        private final long targetLatencyNanos;
+        private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private double ratePerNanos;
+        private double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private double concurrencyLimit = MIN_CONCURRENCY;
+        private int active;
+        private int consecutiveBackoffs;
+        private long pausedUntil = lastRefill;
+        private boolean drainScheduled;
+
+        HostBucket(String host, double requestsPerSecond, int maxConcurrency, long targetLatencyNanos) {
+            this.host = host;
+            this.ratePerNanos = Math.max(requestsPerSecond, 0.001) / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(requestsPerSecond, 1);
+            this.maxConcurrency = Math.max(maxConcurrency, 1);
+            this.targetLatencyNanos = targetLatencyNanos;
+            this.tokens = 1;
+        }
+
+        CompletableFuture<Void> acquire() {
+            CompletableFuture<Void> permit = new CompletableFuture<>();
+            synchronized (this) {
+                waiters.add(permit);
+            }
+            drain();
+            return permit;
+        }
+
+        void release() {
+            synchronized (this) {
+                active--;
+            }
+            drain();
+        }
+
+        synchronized void limitRate(double requestsPerSecond) {
+            double limited = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            if (limited < ratePerNanos) {
+                ratePerNanos = limited;
+                capacity = 1;
+                tokens = Math.min(tokens, capacity);
+                log.info("Host {} limited to {} requests per second by crawl-delay", host, requestsPerSecond);
+            }
+        }
+
+        synchronized void onResponse(int statusCode, long retryAfterMillis, long latencyNanos) {
+            if (isThrottled(statusCode)) {
+                backOff("HTTP " + statusCode, retryAfterMillis);
+            } else if (latencyNanos > targetLatencyNanos) {
+                concurrencyLimit = Math.max(MIN_CONCURRENCY, concurrencyLimit * SLOW_RESPONSE_FACTOR);
+            } else {
+                concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+                consecutiveBackoffs = 0;
+            }
+        }
+
+        /**
+         * Уменьшает предел вдвое и приостанавливает выдачу разрешений
+         *
+         * @param reason           причина для журнала
+         * @param retryAfterMillis пауза из заголовка Retry-After или 0
+         */
+        synchronized void backOff(String reason, long retryAfterMillis) {
+            consecutiveBackoffs++;
+            concurrencyLimit = Math.max(MIN_CONCURRENCY, concurrencyLimit * BACKOFF_FACTOR);
+            long pauseMs = retryAfterMillis > 0
+                    ? retryAfterMillis
+                    : BASE_PAUSE_MS << Math.min(consecutiveBackoffs - 1, 16);
+            pauseMs = Math.min(pauseMs, MAX_PAUSE_MS);
+            long now = System.nanoTime();
+            pausedUntil = Math.max(pausedUntil, now + TimeUnit.MILLISECONDS.toNanos(pauseMs));
+            tokens = 0;
+            lastRefill = Math.max(lastRefill, pausedUntil);
+            log.info("Host {} backed off after {}: concurrency limit {}, pause {} ms",
+                    host, reason, (int) concurrencyLimit, pauseMs);
+        }
+
+        /**
+         * Выдаёт разрешения ожидающим, пока есть токены и свободные слоты.
+         * Future завершаются вне блокировки, чтобы зависимые действия не выполнялись под ней
+         */
+        private void drain() {
+            List<CompletableFuture<Void>> granted = new ArrayList<>();
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (now < pausedUntil) {
+                    scheduleDrain(pausedUntil - now);
+                } else {
+                    refill(now);
+                    while (!waiters.isEmpty() && active < (int) concurrencyLimit && tokens >= 1) {
+                        tokens--;
+                        active++;
+                        granted.add(waiters.poll());
+                    }
+                    if (!waiters.isEmpty() && active < (int) concurrencyLimit) {
+                        scheduleDrain((long) Math.ceil((1 - tokens) / ratePerNanos));
+                    }
+                }
+            }
+            granted.forEach(permit -> {
+                if (!permit.complete(null)) {
+                    release();
+                }
+            });
+        }
+
+        private void scheduleDrain(long delayNanos) {
+            if (!drainScheduled) {
+                drainScheduled = true;
+                timer.schedule(this::scheduledDrain, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void scheduledDrain() {
+            synchronized (this) {
+                drainScheduled = false;
+            }
+            drain();
+        }
+
+        private void refill(long now) {
+            if (now <= lastRefill) {
+                return;
+            }
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNanos);
+            lastRefill = now;
+        }
+    }
+}
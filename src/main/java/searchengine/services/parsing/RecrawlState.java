@@ -0,0 +1,102 @@
+package searchengine.services.parsing;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import searchengine.dto.entity.PageValidators;
+import searchengine.model.SiteEntity;
+import searchengine.repository.PageRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Состояние инкрементального обхода: сохранённые ранее страницы сайта
+ * и отметки о страницах, найденных при текущем обходе
+ */
+public class RecrawlState {
+    private final Map<String, PageValidators> knownPages;
+    private final Set<String> seenPaths = ConcurrentHashMap.newKeySet();
+    private final PageRepository pageRepository;
+
+    private RecrawlState(Map<String, PageValidators> knownPages, PageRepository pageRepository) {
+        this.knownPages = knownPages;
+        this.pageRepository = pageRepository;
+    }
+
+    /**
+     * Состояние полного обхода: сохранённых страниц нет, запросы безусловные
+     */
+    public static RecrawlState empty() {
+        return new RecrawlState(Map.of(), null);
+    }
+
+    /**
+     * Загружает сведения о сохранённых страницах сайта порциями по ключу,
+     * так что в памяти одновременно находится не больше одной порции результата запроса
+     *
+     * @param siteEntity     сайт
+     * @param pageRepository репозиторий страниц
+     * @param chunkSize      количество страниц в порции
+     * @return RecrawlState
+     */
+    public static RecrawlState load(SiteEntity siteEntity, PageRepository pageRepository, int chunkSize) {
+        Map<String, PageValidators> knownPages = new HashMap<>();
+        Pageable chunk = PageRequest.ofSize(Math.max(chunkSize, 1));
+        int afterId = 0;
+        List<PageValidators> validators;
+        do {
+            validators = pageRepository.findValidatorsChunk(siteEntity, afterId, chunk);
+            validators.forEach(page -> knownPages.putIfAbsent(page.getPath(), page));
+            if (!validators.isEmpty()) {
+                afterId = validators.get(validators.size() - 1).getId();
+            }
+        } while (validators.size() == chunk.getPageSize());
+        return new RecrawlState(knownPages, pageRepository);
+    }
+
+    public boolean isIncremental() {
+        return pageRepository != null;
+    }
+
+    /**
+     * Возвращает сведения о сохранённой странице и отмечает её как найденную
+     *
+     * @param url адрес страницы
+     * @return PageValidators или null, если страница не сохранялась
+     */
+    public PageValidators visit(String url) {
+        String path = pathOf(url);
+        seenPaths.add(path);
+        return knownPages.get(path);
+    }
+
+    public PageValidators find(String url) {
+        return knownPages.get(pathOf(url));
+    }
+
+    /**
+     * HTML-код сохранённой страницы, нужен для поиска ссылок при ответе 304
+     */
+    public String storedContent(PageValidators validators) {
+        return pageRepository.findContentById(validators.getId());
+    }
+
+    /**
+     * Сохранённые страницы, которые не были найдены при обходе
+     *
+     * @return Collection
+     */
+    public Collection<PageValidators> unseenPages() {
+        return knownPages.values().stream()
+                .filter(validators -> !seenPaths.contains(validators.getPath()))
+                .toList();
+    }
+
+    private static String pathOf(String url) {
+        return UrlCanonicalizer.pathKey(url);
+    }
+}
@@ -0,0 +1,187 @@
+package searchengine.services.parsing;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt для одного хоста.
+ * <p>
+ * Используется группа правил с самым длинным именем User-agent, которое
+ * входит в User-Agent обходчика, иначе группа «*». Из правил Allow и Disallow
+ * применяется то, что совпадает с самым длинным префиксом пути, при равной
+ * длине побеждает Allow. Поддерживаются шаблоны «*» и «$»
+ */
+public class RobotsTxt {
+    private static final RobotsTxt ALLOW_ALL = new RobotsTxt(List.of(), 0, List.of());
+
+    private final List<Rule> rules;
+    /**
+     * Crawl-delay в миллисекундах или 0, если он не задан
+     */
+    @Getter
+    private final long crawlDelayMillis;
+    @Getter
+    private final List<String> sitemaps;
+
+    private RobotsTxt(List<Rule> rules, long crawlDelayMillis, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMillis = crawlDelayMillis;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsTxt allowAll() {
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Разбирает robots.txt
+     *
+     * @param content   содержимое файла
+     * @param userAgent User-Agent обходчика
+     * @return RobotsTxt
+     */
+    public static RobotsTxt parse(String content, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        List<String> sitemaps = new ArrayList<>();
+        List<Rule> bestRules = null;
+        long bestDelay = 0;
+        int bestMatch = -1;
+
+        List<String> groupAgents = new ArrayList<>();
+        List<Rule> groupRules = new ArrayList<>();
+        long groupDelay = 0;
+        boolean inRules = false;
+        for (String rawLine : content.split("\\R")) {
+            String line = stripComment(rawLine);
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (field) {
+                case "user-agent" -> {
+                    if (inRules) {
+                        int match = matchLength(groupAgents, agent);
+                        if (match > bestMatch) {
+                            bestMatch = match;
+                            bestRules = groupRules;
+                            bestDelay = groupDelay;
+                        }
+                        groupAgents = new ArrayList<>();
+                        groupRules = new ArrayList<>();
+                        groupDelay = 0;
+                        inRules = false;
+                    }
+                    groupAgents.add(value.toLowerCase(Locale.ROOT));
+                }
+                case "allow", "disallow" -> {
+                    inRules = true;
+                    if (!value.isEmpty()) {
+                        groupRules.add(new Rule(value, field.equals("allow")));
+                    }
+                }
+                case "crawl-delay" -> {
+                    inRules = true;
+                    groupDelay = parseDelay(value);
+                }
+                case "sitemap" -> sitemaps.add(value);
+                default -> {
+                }
+            }
+        }
+        int match = matchLength(groupAgents, agent);
+        if (match > bestMatch) {
+            bestRules = groupRules;
+            bestDelay = groupDelay;
+        }
+        return new RobotsTxt(bestRules == null ? List.of() : bestRules, bestDelay, sitemaps);
+    }
+
+    /**
+     * Проверяет, разрешён ли обход пути
+     *
+     * @param path путь страницы вместе со строкой запроса
+     * @return boolean
+     */
+    public boolean isAllowed(String path) {
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null
+                    || rule.length() > best.length()
+                    || (rule.length() == best.length() && rule.allow))) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    /**
+     * Длина самого подходящего имени робота группы: -1, если группа не подходит,
+     * 0 для «*»
+     */
+    private static int matchLength(List<String> groupAgents, String agent) {
+        int best = -1;
+        for (String groupAgent : groupAgents) {
+            if (groupAgent.equals("*")) {
+                best = Math.max(best, 0);
+            } else if (!groupAgent.isEmpty() && agent.contains(groupAgent)) {
+                best = Math.max(best, groupAgent.length());
+            }
+        }
+        return best;
+    }
+
+    private static String stripComment(String line) {
+        int hash = line.indexOf('#');
+        return hash < 0 ? line : line.substring(0, hash);
+    }
+
+    private static long parseDelay(String value) {
+        try {
+            return (long) (Double.parseDouble(value) * 1000);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static final class Rule {
+        private final String path;
+        private final boolean allow;
+        private final Pattern pattern;
+
+        Rule(String path, boolean allow) {
+            this.path = path;
+            this.allow = allow;
+            this.pattern = toPattern(path);
+        }
+
+        boolean matches(String target) {
+            return pattern.matcher(target).lookingAt();
+        }
+
+        int length() {
+            return path.length();
+        }
+
+        private static Pattern toPattern(String path) {
+            boolean anchored = path.endsWith("$");
+            String body = anchored ? path.substring(0, path.length() - 1) : path;
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (!regex.isEmpty()) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            if (anchored) {
+                regex.append('$');
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package searchengine.services.parsing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.dto.entity.Page;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Загрузка и кеширование robots.txt по хостам. Файл запрашивается
+ * не чаще раза в сутки; если его нет или он недоступен, обход не ограничивается
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RobotsTxtCache {
+    private static final long TTL_MILLIS = Duration.ofDays(1).toMillis();
+
+    private final PageFetcher pageFetcher;
+    private final Map<String, CachedRobots> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param siteUrl адрес сайта
+     * @return правила robots.txt хоста сайта
+     */
+    public RobotsTxt forSite(String siteUrl) throws InterruptedException {
+        URI uri = URI.create(siteUrl);
+        String origin = uri.getScheme() + "://" + uri.getRawAuthority();
+        CachedRobots cached = cache.get(origin);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt < TTL_MILLIS) {
+            return cached.robotsTxt;
+        }
+        RobotsTxt robotsTxt = load(origin + "/robots.txt");
+        cache.put(origin, new CachedRobots(robotsTxt, System.currentTimeMillis()));
+        return robotsTxt;
+    }
+
+    private RobotsTxt load(String robotsUrl) throws InterruptedException {
+        try {
+            Page page = pageFetcher.fetchText(robotsUrl);
+            if (page.getStatusCode() != 200) {
+                log.info("No robots.txt at {} (HTTP {})", robotsUrl, page.getStatusCode());
+                return RobotsTxt.allowAll();
+            }
+            RobotsTxt robotsTxt = RobotsTxt.parse(page.getContent(), PageFetcher.USER_AGENT);
+            log.info("Loaded {}: crawl-delay {} ms, {} sitemaps",
+                    robotsUrl, robotsTxt.getCrawlDelayMillis(), robotsTxt.getSitemaps().size());
+            return robotsTxt;
+        } catch (IOException ex) {
+            log.warn("Failed to load {}: {}", robotsUrl, ex.getMessage());
+            return RobotsTxt.allowAll();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class CachedRobots {
+        private final RobotsTxt robotsTxt;
+        private final long loadedAt;
+    }
+}
@@ -0,0 +1,94 @@
+package searchengine.services.parsing;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.repository.SiteRepository;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая запись времени статуса индексируемых сайтов.
+ * <p>
+ * Задачи обхода только обновляют в памяти время последней обработанной страницы,
+ * а один фоновый поток с фиксированным интервалом записывает в базу данных
+ * изменившиеся значения одним UPDATE на сайт. Так вместо сохранения сайта
+ * на каждую ссылку выполняется не больше одного запроса в интервал
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteHeartbeat {
+    private static final long FLUSHED = 0;
+
+    private final SiteRepository siteRepository;
+    private final CrawlerSettings crawlerSettings;
+    private final Map<Integer, SiteProgress> sites = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "site-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        long interval = Math.max(crawlerSettings.getHeartbeatIntervalMs(), 100);
+        timer.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Отмечает обработку очередной страницы сайта
+     *
+     * @param siteId идентификатор сайта
+     */
+    public void touch(int siteId) {
+        SiteProgress progress = sites.computeIfAbsent(siteId, id -> new SiteProgress());
+        progress.lastTouch.set(System.currentTimeMillis());
+        progress.pages.incrementAndGet();
+    }
+
+    /**
+     * Прекращает запись времени статуса сайта. Вызывается при завершении обхода,
+     * после которого статус сайта сохраняется целиком
+     *
+     * @param siteId идентификатор сайта
+     */
+    public void finish(int siteId) {
+        sites.remove(siteId);
+    }
+
+    private void flush() {
+        sites.forEach((siteId, progress) -> {
+            long lastTouch = progress.lastTouch.getAndSet(FLUSHED);
+            if (lastTouch == FLUSHED) {
+                return;
+            }
+            try {
+                siteRepository.updateStatusTime(siteId, new Date(lastTouch));
+                log.debug("Site {} heartbeat: {} pages processed", siteId, progress.pages.get());
+            } catch (Exception ex) {
+                progress.lastTouch.compareAndSet(FLUSHED, lastTouch);
+                log.warn("Failed to update status time of site {}: {}", siteId, ex.getMessage());
+            }
+        });
+    }
+
+    private static final class SiteProgress {
+        private final AtomicLong lastTouch = new AtomicLong(FLUSHED);
+        private final AtomicLong pages = new AtomicLong();
+    }
+}
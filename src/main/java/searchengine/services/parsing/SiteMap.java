@@ -1,126 +1,124 @@
 package searchengine.services.parsing;
 
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 import searchengine.dto.entity.Page;
-import searchengine.model.SiteEntity;
-import searchengine.model.StatusType;
-import searchengine.repository.SiteRepository;
+import searchengine.dto.entity.PageValidators;
 
 import java.io.IOException;
-import java.time.Instant;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.RecursiveAction;
-
-import static java.lang.Thread.sleep;
-
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Задача обхода одной страницы: страница скачивается один раз и передаётся
+ * в конвейер, а найденные в ней новые ссылки добавляются в очередь обхода.
+ * Задачи не порождают подзадач, поэтому сайт обходится в ширину без глубокой рекурсии.
+ * Адрес задачи должен быть заранее добавлен в множество посещённых.
+ * <p>
+ * Задача отправляется в пул только после выдачи разрешения планировщиком
+ * вежливого обхода, поэтому потоки пула не ждут разрешений. После ответов 429 и 503
+ * задача не повторяет запрос сама, а снова запрашивает разрешение и отправляется в пул
+ */
 @Slf4j
-public class SiteMap extends RecursiveAction {
-    private static final String USER_AGENT = "Mozilla/5.0 (compatible; YandexBot/3.0; +http://yandex.com/bots)";
-    private static final String REFERRER = "https://www.yandex.ru";
-    private static final boolean IGNORE_CONTENT_TYPE = true;
-    private static final boolean IGNORE_HTTP_ERRORS = true;
-
-    private static final Set<String> FILE_EXTENSIONS = Set.of(
-            ".jpg", ".jpeg", ".png", ".gif", ".webp", ".pdf", ".eps",
-            ".xlsx", ".doc", ".pptx", ".docx", ".sql", ".yaml",
-            ".zip", ".7z", ".rar"
-    );
+public class SiteMap implements Runnable {
+    private final CrawlContext context;
+    private final FrontierUrl frontierUrl;
+    private final Executor executor;
+    /**
+     * Номер попытки, начиная с нуля
+     */
+    private final int attempt;
+
+    private SiteMap(FrontierUrl frontierUrl, CrawlContext context, Executor executor, int attempt) {
+        this.frontierUrl = frontierUrl;
+        this.context = context;
+        this.executor = executor;
+        this.attempt = attempt;
+    }
 
-    private static final Set<Page> allPages = new CopyOnWriteArraySet<>();
-    private static final Set<String> allLinks = new CopyOnWriteArraySet<>();
-    private final SiteRepository siteRepository;
-    private final SiteEntity siteEntity;
-    private final String url;
-    private final boolean isSinglePage;
-    private final boolean isIndexingStopped;
+    /**
+     * Запрашивает разрешение на запрос к хосту страницы и после его выдачи
+     * отправляет задачу обхода страницы в пул
+     *
+     * @param frontierUrl адрес страницы с глубиной от главной
+     * @param context     состояние обхода сайта
+     * @param executor    пул задач обхода
+     */
+    public static void submit(FrontierUrl frontierUrl, CrawlContext context, Executor executor) {
+        submit(frontierUrl, context, executor, 0);
+    }
 
-    public SiteMap(String url, SiteRepository siteRepository, SiteEntity siteEntity, boolean isSinglePage, boolean isIndexingStopped) {
-        this.url = url;
-        this.siteRepository = siteRepository;
-        this.siteEntity = siteEntity;
-        this.isSinglePage = isSinglePage;
-        this.isIndexingStopped = isIndexingStopped;
+    private static void submit(FrontierUrl frontierUrl, CrawlContext context, Executor executor, int attempt) {
+        String url = frontierUrl.getUrl();
+        PolitenessScheduler scheduler = context.getPolitenessScheduler();
+        scheduler.acquire(url).thenRun(() -> {
+            try {
+                executor.execute(new SiteMap(frontierUrl, context, executor, attempt));
+            } catch (RejectedExecutionException ex) {
+                scheduler.release(url);
+                context.getFrontier().done();
+            }
+        });
     }
 
     @Override
-    protected void compute() {
-        if (isIndexingStopped) {
+    public void run() {
+        String url = frontierUrl.getUrl();
+        if (context.isIndexingStopped()) {
             log.info("Indexing has been stopped. Skipping URL: {}", url);
+            context.getPolitenessScheduler().release(url);
+            context.getFrontier().done();
             return;
         }
+        boolean finished = true;
         try {
-            sleep(500);
-            Document document = connection(url);
-            Elements links = document.select("a[href]");
-
-            List<SiteMap> allTasks = new CopyOnWriteArrayList<>();
-
-            String uri = isSinglePage ? url : siteEntity.getUrl();
-            for (var link : links) {
-                Page page = new Page();
-                String currentUrl = link.attr("abs:href");
-                if (currentUrl.contains(uri)
-                        && !isFile(currentUrl)
-                        && !currentUrl.contains("#")
-                        && !currentUrl.contains(".html/")
-                        && !allLinks.contains(currentUrl)) {
-                    log.info("Current URL: {}", currentUrl);
-
-                    Document documentChild = connection(currentUrl);
-
-                    page.setPath(currentUrl);
-                    page.setContent(documentChild.html());
-                    page.setStatusCode(documentChild.connection().response().statusCode());
-
-                    allPages.add(page);
-                    allLinks.add(currentUrl);
-
-                    setSiteEntityStatusTime();
+            log.info("Current URL: {}", url);
+            Page page = fetch(url);
+            if (context.getPolitenessScheduler().shouldRetry(page, attempt)) {
+                finished = false;
+                submit(frontierUrl, context, executor, attempt + 1);
+                return;
+            }
+            Document document = context.acceptPage(url, context.restoreNotModified(url, page));
+            context.touchStatusTime();
 
-                    SiteMap subTask = new SiteMap(currentUrl, siteRepository, siteEntity, isSinglePage, isIndexingStopped);
-                    allTasks.add(subTask);
-                }
+            for (var link : document.select("a[href]")) {
+                String currentUrl = UrlCanonicalizer.canonicalize(link.attr("abs:href"));
+                context.discover(new FrontierUrl(currentUrl, frontierUrl.getDepth() + 1));
             }
-            invokeAll(allTasks);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         } catch (Exception ex) {
-            setSiteEntityLastError(ex);
+            context.recordFailure(url, ex);
             log.error(ex.getMessage());
+        } finally {
+            if (finished) {
+                context.getFrontier().done();
+            }
         }
     }
 
-    private void setSiteEntityStatusTime() {
-        siteEntity.setStatusTime(Date.from(Instant.now()));
-        siteRepository.save(siteEntity);
-    }
-
-    private void setSiteEntityLastError(Exception exception) {
-        siteEntity.setLastError(exception.getMessage());
-        siteEntity.setStatus(StatusType.FAILED);
-        siteRepository.save(siteEntity);
-    }
-
-    public Set<Page> getPages() {
-        return new HashSet<>(allPages);
-    }
-
-    private boolean isFile(String link) {
-        return FILE_EXTENSIONS.stream().anyMatch(link.toLowerCase()::endsWith) || link.contains("?_ga");
-    }
-
-    private Document connection(String url) throws IOException {
-        return Jsoup.connect(url)
-                .userAgent(USER_AGENT)
-                .referrer(REFERRER)
-                .ignoreContentType(IGNORE_CONTENT_TYPE)
-                .ignoreHttpErrors(IGNORE_HTTP_ERRORS)
-                .get();
+    /**
+     * Скачивает страницу по выданному разрешению и возвращает разрешение планировщику
+     *
+     * @param url адрес страницы
+     * @return Page
+     */
+    private Page fetch(String url) throws IOException, InterruptedException {
+        PolitenessScheduler scheduler = context.getPolitenessScheduler();
+        try {
+            context.getStats().recordFetch();
+            PageValidators validators = context.getRecrawlState().visit(url);
+            long start = System.nanoTime();
+            Page page = context.getPageFetcher().fetch(url, validators);
+            scheduler.recordResponse(url, page, System.nanoTime() - start);
+            context.getStats().recordPage(page);
+            return page;
+        } catch (IOException ex) {
+            scheduler.recordFailure(url, ex);
+            throw ex;
+        } finally {
+            scheduler.release(url);
+        }
     }
 }
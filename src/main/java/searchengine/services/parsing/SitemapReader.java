@@ -0,0 +1,106 @@
+package searchengine.services.parsing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.springframework.stereotype.Component;
+import searchengine.dto.entity.Page;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Чтение sitemap.xml и индексов sitemap. Найденные адреса становятся
+ * начальными адресами обхода с глубиной 1 и датой изменения из {@code lastmod}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitemapReader {
+    private static final int MAX_SITEMAP_FILES = 50;
+
+    private final PageFetcher pageFetcher;
+
+    /**
+     * Читает sitemap-файлы, включая вложенные индексы
+     *
+     * @param sitemapUrls адреса sitemap-файлов
+     * @param maxUrls     максимальное количество адресов, 0 — без ограничения
+     * @return адреса страниц
+     */
+    public List<FrontierUrl> read(List<String> sitemapUrls, int maxUrls) throws InterruptedException {
+        List<FrontierUrl> urls = new ArrayList<>();
+        Deque<String> files = new ArrayDeque<>(sitemapUrls);
+        Set<String> seenFiles = new HashSet<>();
+        while (!files.isEmpty() && seenFiles.size() < MAX_SITEMAP_FILES && (maxUrls <= 0 || urls.size() < maxUrls)) {
+            String file = files.poll();
+            if (!seenFiles.add(file)) {
+                continue;
+            }
+            if (file.endsWith(".gz")) {
+                log.info("Compressed sitemap {} skipped", file);
+                continue;
+            }
+            Document document = load(file);
+            if (document == null) {
+                continue;
+            }
+            for (Element loc : document.select("sitemapindex > sitemap > loc")) {
+                files.add(loc.text().trim());
+            }
+            for (Element entry : document.select("urlset > url")) {
+                if (maxUrls > 0 && urls.size() >= maxUrls) {
+                    break;
+                }
+                Element loc = entry.selectFirst("loc");
+                Element lastmod = entry.selectFirst("lastmod");
+                if (loc != null && !loc.text().isBlank()) {
+                    urls.add(new FrontierUrl(loc.text().trim(), 1, lastmod == null ? null : parseLastmod(lastmod.text())));
+                }
+            }
+        }
+        log.info("Read {} URLs from {} sitemap files", urls.size(), seenFiles.size());
+        return urls;
+    }
+
+    private Document load(String sitemapUrl) throws InterruptedException {
+        try {
+            Page page = pageFetcher.fetchText(sitemapUrl);
+            if (page.getStatusCode() != 200) {
+                log.info("No sitemap at {} (HTTP {})", sitemapUrl, page.getStatusCode());
+                return null;
+            }
+            return Jsoup.parse(page.getContent(), sitemapUrl, Parser.xmlParser());
+        } catch (IOException ex) {
+            log.warn("Failed to load sitemap {}: {}", sitemapUrl, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Дата в lastmod записывается в формате W3C Datetime: дата или дата со временем
+     */
+    private static Instant parseLastmod(String value) {
+        String trimmed = value.trim();
+        try {
+            return trimmed.length() <= 10
+                    ? LocalDate.parse(trimmed).atStartOfDay().toInstant(ZoneOffset.UTC)
+                    : OffsetDateTime.parse(trimmed).toInstant();
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
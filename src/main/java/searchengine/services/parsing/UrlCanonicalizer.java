@@ -0,0 +1,134 @@
+package searchengine.services.parsing;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Приведение адресов к каноническому виду, чтобы одна и та же страница,
+ * доступная по разным адресам, обходилась один раз.
+ * <p>
+ * Адрес для запроса сохраняет завершающий слеш: от него зависят перенаправления
+ * сервера и разрешение относительных ссылок. Завершающий слеш убирается только
+ * в ключах, по которым адреса сравниваются ({@link #dedupeKey}, {@link #pathKey})
+ */
+public final class UrlCanonicalizer {
+    /**
+     * Идентификаторы рекламных переходов и счётчиков, не влияющие на содержимое страницы.
+     * Параметры вроде from и ref не удаляются: на многих сайтах это фильтры
+     */
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "_ga", "_gl", "gclid", "dclid", "gbraid", "wbraid", "yclid", "ysclid", "fbclid", "msclkid",
+            "_openstat"
+    );
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * Приводит схему и хост к нижнему регистру, убирает порт по умолчанию,
+     * якорь и рекламные параметры, сортирует параметры запроса.
+     * Путь не меняется, поэтому адрес пригоден для запроса и как база ссылок
+     *
+     * @param url абсолютный адрес
+     * @return канонический адрес или исходная строка, если адрес некорректен
+     */
+    public static String canonicalize(String url) {
+        return normalize(url, false);
+    }
+
+    /**
+     * Ключ адреса в множестве посещённых: канонический адрес без завершающего слеша,
+     * чтобы /catalog и /catalog/ обходились один раз
+     *
+     * @param url абсолютный адрес
+     * @return ключ адреса или исходная строка, если адрес некорректен
+     */
+    public static String dedupeKey(String url) {
+        return normalize(url, true);
+    }
+
+    private static String normalize(String url, boolean stripTrailingSlash) {
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException ex) {
+            return url;
+        }
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            return url;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder builder = new StringBuilder(url.length())
+                .append(scheme)
+                .append("://")
+                .append(uri.getHost().toLowerCase(Locale.ROOT));
+        if (uri.getPort() != -1 && !isDefaultPort(scheme, uri.getPort())) {
+            builder.append(':').append(uri.getPort());
+        }
+        builder.append(canonicalPath(uri.getRawPath(), stripTrailingSlash));
+        String query = canonicalQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            builder.append('?').append(query);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Ключ страницы внутри сайта: путь в исходной (percent-encoded) форме
+     * без завершающего слеша и канонический запрос. В таком виде адрес страницы
+     * хранится в базе данных
+     *
+     * @param url абсолютный адрес
+     * @return путь с запросом, например /list?page=2
+     */
+    public static String pathKey(String url) {
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException ex) {
+            return url;
+        }
+        String query = canonicalQuery(uri.getRawQuery());
+        String path = canonicalPath(uri.getRawPath(), true);
+        return query.isEmpty() ? path : path + "?" + query;
+    }
+
+    private static boolean isDefaultPort(String scheme, int port) {
+        return (scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443);
+    }
+
+    private static String canonicalPath(String path, boolean stripTrailingSlash) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        if (!stripTrailingSlash) {
+            return path;
+        }
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(0, end);
+    }
+
+    private static String canonicalQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        return Arrays.stream(query.split("&"))
+                .filter(parameter -> !parameter.isEmpty())
+                .filter(parameter -> !isTracking(parameter))
+                .sorted()
+                .collect(Collectors.joining("&"));
+    }
+
+    private static boolean isTracking(String parameter) {
+        int separator = parameter.indexOf('=');
+        String name = (separator == -1 ? parameter : parameter.substring(0, separator)).toLowerCase(Locale.ROOT);
+        return name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name);
+    }
+}
@@ -0,0 +1,34 @@
+package searchengine.services.parsing;
+
+/**
+ * Множество уже найденных адресов одного обхода сайта
+ */
+public interface VisitedUrlSet {
+
+    /**
+     * Атомарно добавляет адрес
+     *
+     * @param url адрес страницы
+     * @return true, если адрес встретился впервые
+     */
+    boolean add(String url);
+
+    boolean contains(String url);
+
+    int size();
+
+    /**
+     * Оценка занимаемой памяти в байтах
+     *
+     * @return long
+     */
+    long estimatedBytes();
+
+    /**
+     * @param compact хранить вместо адресов их 64-битные отпечатки
+     * @return VisitedUrlSet
+     */
+    static VisitedUrlSet create(boolean compact) {
+        return compact ? new FingerprintVisitedUrlSet() : new ConcurrentVisitedUrlSet();
+    }
+}
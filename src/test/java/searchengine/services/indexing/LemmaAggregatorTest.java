@@ -0,0 +1,88 @@
+package searchengine.services.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LemmaAggregatorTest {
+    private static final int PAGES = 5_000;
+    private static final int VOCABULARY = 2_000;
+    private static final int THREADS = 16;
+
+    @Test
+    void parallelFrequenciesMatchSingleThreaded() throws Exception {
+        List<Map<String, int[]>> pages = randomPages(new Random(42));
+        Map<String, Integer> expected = singleThreaded(pages);
+
+        ForkJoinPool pool = new ForkJoinPool(THREADS);
+        try {
+            for (int run = 0; run < 10; run++) {
+                assertEquals(expected, pool.submit(() -> LemmaAggregator.documentFrequencies(pages)).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentCallsMatchSingleThreaded() throws Exception {
+        List<Map<String, int[]>> pages = randomPages(new Random(7));
+        Map<String, Integer> expected = singleThreaded(pages);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Map<String, Integer>>> calls = new ArrayList<>();
+            for (int i = 0; i < THREADS * 4; i++) {
+                calls.add(() -> LemmaAggregator.documentFrequencies(pages));
+            }
+            for (Future<Map<String, Integer>> result : executor.invokeAll(calls)) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void smallInputIsCountedInCallingThread() {
+        List<Map<String, int[]>> pages = List.of(
+                Map.of("дом", new int[]{0}, "house", new int[]{1}),
+                Map.of("дом", new int[]{3}));
+
+        assertEquals(Map.of("дом", 2, "house", 1), LemmaAggregator.documentFrequencies(pages));
+    }
+
+    private static List<Map<String, int[]>> randomPages(Random random) {
+        List<Map<String, int[]>> pages = new ArrayList<>(PAGES);
+        for (int page = 0; page < PAGES; page++) {
+            Map<String, int[]> lemmas = new HashMap<>();
+            int words = 1 + random.nextInt(200);
+            for (int word = 0; word < words; word++) {
+                lemmas.put("лемма" + random.nextInt(VOCABULARY), new int[]{word});
+            }
+            pages.add(lemmas);
+        }
+        return pages;
+    }
+
+    private static Map<String, Integer> singleThreaded(List<Map<String, int[]>> pages) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (Map<String, int[]> lemmas : pages) {
+            for (String lemma : lemmas.keySet()) {
+                frequencies.merge(lemma, 1, Integer::sum);
+            }
+        }
+        return frequencies;
+    }
+}
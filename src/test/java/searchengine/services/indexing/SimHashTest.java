@@ -0,0 +1,77 @@
+package searchengine.services.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimHashTest {
+    private static final int MAX_DISTANCE = 3;
+    private static final int MAX_EDIT_DISTANCE = 10;
+    private static final int TEXTS = 100;
+
+    @Test
+    void insertedWordNearTopKeepsFingerprintClose() {
+        assertOneWordEditsStayClose(words -> words.add(5, "вставка"));
+    }
+
+    @Test
+    void removedWordNearTopKeepsFingerprintClose() {
+        assertOneWordEditsStayClose(words -> words.remove(3));
+    }
+
+    @Test
+    void differentTextsAreFarApart() {
+        long first = SimHash.fingerprint(String.join(" ", randomWords(new Random(TEXTS + 1), 400)));
+        long second = SimHash.fingerprint(String.join(" ", randomWords(new Random(TEXTS + 2), 400)));
+        assertTrue(SimHash.distance(first, second) > MAX_DISTANCE * 4);
+    }
+
+    @Test
+    void fingerprintIgnoresCaseAndPunctuation() {
+        assertEquals(SimHash.fingerprint("Поиск по сайту, быстро и точно"),
+                SimHash.fingerprint("поиск  по САЙТУ — быстро и точно!"));
+    }
+
+    @Test
+    void textWithoutWordsHasNoWords() {
+        assertFalse(SimHash.hasWords(""));
+        assertFalse(SimHash.hasWords(" — ©, !"));
+        assertTrue(SimHash.hasWords(" — 1"));
+    }
+
+    /**
+     * Правка одного слова меняет не более трёх шинглов из сотен, поэтому отпечатки
+     * большинства текстов остаются в пределах порога почти дубликатов,
+     * а остальных — ненамного дальше. Разные тексты отличаются примерно в 32 битах
+     */
+    private static void assertOneWordEditsStayClose(Consumer<List<String>> edit) {
+        int withinThreshold = 0;
+        for (int seed = 0; seed < TEXTS; seed++) {
+            List<String> words = randomWords(new Random(seed), 400);
+            List<String> edited = new ArrayList<>(words);
+            edit.accept(edited);
+            int distance = SimHash.distance(SimHash.fingerprint(String.join(" ", words)),
+                    SimHash.fingerprint(String.join(" ", edited)));
+            assertTrue(distance <= MAX_EDIT_DISTANCE, "distance " + distance + " for seed " + seed);
+            if (distance <= MAX_DISTANCE) {
+                withinThreshold++;
+            }
+        }
+        assertTrue(withinThreshold * 3 >= TEXTS * 2, withinThreshold + " of " + TEXTS + " within threshold");
+    }
+
+    private static List<String> randomWords(Random random, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            words.add("слово" + random.nextInt(5_000));
+        }
+        return words;
+    }
+}
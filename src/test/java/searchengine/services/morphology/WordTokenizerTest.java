@@ -0,0 +1,84 @@
+package searchengine.services.morphology;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WordTokenizerTest {
+    /**
+     * Регулярное выражение, которым текст разбивался на слова до однопроходного токенизатора
+     */
+    private static final String OLD_REGEX = "(?<NotCyrillic>[\\p{Punct}\\p{Co}\\p{ASCII}\\p{S}\\p{Lo}’‘№₽©◄«»—|@–…“”„ℹƒµ·ωü]+)";
+    private static final Pattern LATIN_WORD = Pattern.compile("[a-z]+");
+
+    private static final String MIXED_TEXT = """
+            <p>Интернет-магазин «Ёлка» — 24/7, скидки до 50%! Online-заказ: e-mail info@shop.ru</p>
+            Красно-синий COVID-19 и ПО для Windows10; цена 1 999₽ (№5). Сине-зелёный, сине-зелёный…
+            Ёжик в тумане, ёжик—в—тумане. JavaScript,Java;java. слово123слово word-word 3D-печать""";
+
+    @Test
+    void cyrillicWordsMatchOldRegexSplit() {
+        assertEquals(oldRegexSplit(MIXED_TEXT), tokenCounts(MIXED_TEXT, false));
+    }
+
+    @Test
+    void latinWordsAreLowercaseAsciiRuns() {
+        Map<String, Integer> expected = new HashMap<>();
+        Matcher matcher = LATIN_WORD.matcher(MIXED_TEXT.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            expected.merge(matcher.group(), 1, Integer::sum);
+        }
+        assertEquals(expected, tokenCounts(MIXED_TEXT, true));
+    }
+
+    @Test
+    void scriptChangeSplitsWord() {
+        Map<String, Integer> counts = new HashMap<>();
+        WordTokenizer.count("словоWord слово-word").forEach(counts::put);
+        assertEquals(Map.of("слово", 2, "word", 2), counts);
+    }
+
+    @Test
+    void positionsAreWordOrdinals() {
+        Map<String, int[]> positions = new HashMap<>();
+        WordTokenizer.count("Дом, house-дом 42 дом").forEachPositions(positions::put);
+        assertArrayEquals(new int[]{0, 2, 3}, positions.get("дом"));
+        assertArrayEquals(new int[]{1}, positions.get("house"));
+    }
+
+    @Test
+    void longWordsGrowBuffer() {
+        String word = "а".repeat(100);
+        Map<String, Integer> counts = new HashMap<>();
+        WordTokenizer.count(word + " " + word.toUpperCase(Locale.ROOT)).forEach(counts::put);
+        assertEquals(Map.of(word, 2), counts);
+    }
+
+    private static Map<String, Integer> tokenCounts(String text, boolean latin) {
+        Map<String, Integer> counts = new HashMap<>();
+        WordTokenizer.count(text).forEach((word, count) -> {
+            if (WordTokenizer.isLatin(word) == latin) {
+                counts.put(word, count);
+            }
+        });
+        return counts;
+    }
+
+    private static Map<String, Integer> oldRegexSplit(String text) {
+        String content = text.toLowerCase(Locale.ROOT).replaceAll(OLD_REGEX, " ");
+        List<String> words = new ArrayList<>(List.of(content.split("\\s+")));
+        words.removeIf(String::isEmpty);
+        Map<String, Integer> counts = new HashMap<>();
+        words.forEach(word -> counts.merge(word, 1, Integer::sum));
+        return counts;
+    }
+}